@@ -5,6 +5,8 @@
 #
 #
 JUNIT_PLATFORM_VERSION=1.0.2
+SLF4J_VERSION=1.7.25
+SLF4J_API_VERSION=1.7.30
 CONSOLE_LAUNCHER_JAR_ROOT=./target/lib
 echo CONSOLE_LAUNCHER_JAR_ROOT=${CONSOLE_LAUNCHER_JAR_ROOT}
 #
@@ -23,6 +25,9 @@ ${LIB_ROOT}/spring-expression-4.3.8.RELEASE.jar:\
 ${LIB_ROOT}/spring-jdbc-4.3.8.RELEASE.jar:\
 ${LIB_ROOT}/spring-tx-4.3.8.RELEASE.jar:\
 ${LIB_ROOT}/log4j-1.2.17.jar:\
+${LIB_ROOT}/HikariCP-4.0.3.jar:\
+${LIB_ROOT}/slf4j-api-${SLF4J_API_VERSION}.jar:\
+${LIB_ROOT}/slf4j-log4j12-${SLF4J_VERSION}.jar:\
 ${LIB_ROOT}/derby-10.13.1.1.jar:\
 ${LIB_ROOT}/junit-platform-runner-${JUNIT_PLATFORM_VERSION}.jar:\
 ${LIB_ROOT}/commons-lang3-3.5.jar
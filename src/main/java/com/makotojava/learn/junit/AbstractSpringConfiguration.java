@@ -15,10 +15,18 @@
  */
 package com.makotojava.learn.junit;
 
+import java.util.concurrent.TimeUnit;
+
 import javax.sql.DataSource;
 
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 
 /**
  * Abstract Spring Configuration. Runtime provides a concrete
@@ -31,6 +39,62 @@ import org.springframework.context.annotation.Configuration;
 @ComponentScan(basePackages = "com.makotojava.learn.junit5.hellojunit5")
 public abstract class AbstractSpringConfiguration {
 
+  /**
+   * Set to true to put a CachingPersonDao in front of PersonDaoBean.
+   */
+  public static final String PERSON_DAO_CACHE_ENABLED = "personDao.cache.enabled";
+
+  /**
+   * Maximum number of Person objects cached when the cache is enabled.
+   */
+  public static final String PERSON_DAO_CACHE_MAX_SIZE = "personDao.cache.maxSize";
+
+  /**
+   * Time to live, in seconds, of Person objects cached when the cache is enabled.
+   */
+  public static final String PERSON_DAO_CACHE_TTL_SECONDS = "personDao.cache.ttlSeconds";
+
+  /**
+   * Set to true to keep a warmed-up LastNameIndexedPersonDao in front of PersonDaoBean.
+   */
+  public static final String PERSON_DAO_LAST_NAME_INDEX_ENABLED = "personDao.lastNameIndex.enabled";
+
+  /**
+   * Connections the pool keeps open even when idle. Defaults to DEFAULT_POOL_MIN_IDLE.
+   */
+  public static final String POOL_MIN_IDLE = "dataSource.pool.minIdle";
+
+  /**
+   * Most connections the pool will open. Defaults to DEFAULT_POOL_MAX_SIZE.
+   */
+  public static final String POOL_MAX_SIZE = "dataSource.pool.maxSize";
+
+  /**
+   * How long (ms) a caller waits for a connection before giving up. Defaults to
+   * DEFAULT_POOL_CONNECTION_TIMEOUT_MS.
+   */
+  public static final String POOL_CONNECTION_TIMEOUT_MS = "dataSource.pool.connectionTimeoutMs";
+
+  /**
+   * How long (ms) the pool waits for a connection to prove it is alive
+   * (Connection.isValid()) before handing it out. Defaults to
+   * DEFAULT_POOL_VALIDATION_TIMEOUT_MS.
+   */
+  public static final String POOL_VALIDATION_TIMEOUT_MS = "dataSource.pool.validationTimeoutMs";
+
+  /**
+   * How long (ms) a connection can be out of the pool before it is logged
+   * as a possible leak. 0 turns leak detection off. Defaults to
+   * DEFAULT_POOL_LEAK_DETECTION_THRESHOLD_MS.
+   */
+  public static final String POOL_LEAK_DETECTION_THRESHOLD_MS = "dataSource.pool.leakDetectionThresholdMs";
+
+  public static final int DEFAULT_POOL_MIN_IDLE = 2;
+  public static final int DEFAULT_POOL_MAX_SIZE = 10;
+  public static final long DEFAULT_POOL_CONNECTION_TIMEOUT_MS = 30000;
+  public static final long DEFAULT_POOL_VALIDATION_TIMEOUT_MS = 5000;
+  public static final long DEFAULT_POOL_LEAK_DETECTION_THRESHOLD_MS = 60000;
+
   /**
    * The DataSource for accessing the persistent store.
    * 
@@ -38,4 +102,55 @@ public abstract class AbstractSpringConfiguration {
    */
   public abstract DataSource getDataSource();
 
+  /**
+   * Wraps the specified DataSource in a connection pool, sized and tuned
+   * by the dataSource.pool.* properties. Concrete configurations that want
+   * pooling call this from getDataSource(); Spring closes the pool along
+   * with the ApplicationContext.
+   * 
+   * @param target
+   *          The unpooled DataSource that opens the physical connections.
+   * @param environment
+   *          Where the dataSource.pool.* properties come from.
+   */
+  protected HikariDataSource createPooledDataSource(DataSource target, Environment environment) {
+    HikariConfig config = new HikariConfig();
+    config.setPoolName("PersonPool");
+    config.setDataSource(target);
+    config.setMinimumIdle(environment.getProperty(POOL_MIN_IDLE, Integer.class, DEFAULT_POOL_MIN_IDLE));
+    config.setMaximumPoolSize(environment.getProperty(POOL_MAX_SIZE, Integer.class, DEFAULT_POOL_MAX_SIZE));
+    config.setConnectionTimeout(
+        environment.getProperty(POOL_CONNECTION_TIMEOUT_MS, Long.class, DEFAULT_POOL_CONNECTION_TIMEOUT_MS));
+    config.setValidationTimeout(
+        environment.getProperty(POOL_VALIDATION_TIMEOUT_MS, Long.class, DEFAULT_POOL_VALIDATION_TIMEOUT_MS));
+    config.setLeakDetectionThreshold(environment.getProperty(POOL_LEAK_DETECTION_THRESHOLD_MS, Long.class,
+        DEFAULT_POOL_LEAK_DETECTION_THRESHOLD_MS));
+    return new HikariDataSource(config);
+  }
+
+  /**
+   * The PersonDao to inject wherever one is needed. This is the plain
+   * PersonDaoBean unless the personDao.lastNameIndex.enabled and/or
+   * personDao.cache.enabled properties (system property, environment
+   * variable, etc.) are true, in which case the PersonDaoBean is wrapped
+   * in a LastNameIndexedPersonDao and/or CachingPersonDao.
+   */
+  @Bean
+  @Primary
+  public PersonDao personDao(PersonDaoBean personDaoBean, Environment environment) {
+    PersonDao ret = personDaoBean;
+    if (environment.getProperty(PERSON_DAO_LAST_NAME_INDEX_ENABLED, Boolean.class, false)) {
+      LastNameIndexedPersonDao lastNameIndexedPersonDao = new LastNameIndexedPersonDao(ret);
+      lastNameIndexedPersonDao.warmUp();
+      ret = lastNameIndexedPersonDao;
+    }
+    if (environment.getProperty(PERSON_DAO_CACHE_ENABLED, Boolean.class, false)) {
+      ret = new CachingPersonDao(ret,
+          environment.getProperty(PERSON_DAO_CACHE_MAX_SIZE, Integer.class, CachingPersonDao.DEFAULT_MAX_SIZE),
+          environment.getProperty(PERSON_DAO_CACHE_TTL_SECONDS, Long.class, CachingPersonDao.DEFAULT_TTL_SECONDS),
+          TimeUnit.SECONDS);
+    }
+    return ret;
+  }
+
 }
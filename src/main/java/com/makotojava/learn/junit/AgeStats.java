@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.makotojava.learn.junit;
+
+/**
+ * Age statistics for a group of Person objects, as returned by
+ * PersonDao.ageStatsBy(). Immutable.
+ * 
+ * @author J Steven Perry
+ *
+ */
+public final class AgeStats {
+
+  private final int count;
+  private final int minAge;
+  private final int maxAge;
+  private final long sumOfAges;
+
+  public AgeStats(int count, int minAge, int maxAge, long sumOfAges) {
+    this.count = count;
+    this.minAge = minAge;
+    this.maxAge = maxAge;
+    this.sumOfAges = sumOfAges;
+  }
+
+  /**
+   * @return int - the number of Person objects in the group.
+   */
+  public int getCount() {
+    return count;
+  }
+
+  public int getMinAge() {
+    return minAge;
+  }
+
+  public int getMaxAge() {
+    return maxAge;
+  }
+
+  public long getSumOfAges() {
+    return sumOfAges;
+  }
+
+  public double getAverageAge() {
+    return count == 0 ? 0.0 : (double) sumOfAges / count;
+  }
+
+  @Override
+  public String toString() {
+    return "AgeStats [count=" + count + ", minAge=" + minAge + ", maxAge=" + maxAge + ", averageAge="
+        + getAverageAge() + "]";
+  }
+
+}
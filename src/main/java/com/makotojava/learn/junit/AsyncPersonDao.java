@@ -0,0 +1,449 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.makotojava.learn.junit;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Non-blocking facade over a PersonDao. Each call is run on a dedicated,
+ * bounded pool of worker threads and returns a CompletableFuture right
+ * away, so callers can fan out several lookups at once.
+ *
+ * Backpressure: at most queueCapacity calls wait for a free worker. Past
+ * that, calls are rejected and the returned future completes exceptionally
+ * with a RejectedExecutionException (see getRejectedCount()). Nothing
+ * blocks the caller.
+ *
+ * Latency is tracked per Operation, from submission to completion, so it
+ * includes time spent waiting in the queue.
+ *
+ * On JDK 21 and later, virtualThreads() gives a facade that runs every
+ * call on its own virtual thread instead of a fixed pool. Backpressure
+ * then comes from a cap on the number of calls in flight. Note that
+ * Derby's embedded driver runs every statement inside a synchronized
+ * block, so with Derby each call still pins its carrier thread while it
+ * is in the driver (see virtualThreads()).
+ *
+ * Close it when finished to stop the worker threads.
+ *
+ * @author J Steven Perry
+ *
+ */
+public class AsyncPersonDao implements AutoCloseable {
+
+  private static final Logger log = Logger.getLogger(AsyncPersonDao.class);
+
+  /**
+   * The default number of worker threads.
+   */
+  public static final int DEFAULT_THREADS = 8;
+
+  /**
+   * The default number of calls that can wait for a free worker.
+   */
+  public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+  /**
+   * The default cap on calls in flight in virtual thread mode: the
+   * default connection pool size, since no more calls than that can be
+   * in the driver at once.
+   */
+  public static final int DEFAULT_MAX_IN_FLIGHT = AbstractSpringConfiguration.DEFAULT_POOL_MAX_SIZE;
+
+  /**
+   * The operations latency is tracked for.
+   */
+  public enum Operation {
+    FIND_ALL, FOR_EACH, FIND_PAGE, FIND_BY_ID, FIND_ALL_BY_ID, FIND_ALL_BY_LAST_NAME, FIND_BY_CRITERIA,
+    EXISTS_BY_ID, COUNT_ALL, COUNT_BY_LAST_NAME, COUNT_BY, AGE_STATS_BY,
+    ADD, ADD_ALL, UPDATE, DELETE, UPSERT, UPSERT_ALL, UPDATE_ALL, DELETE_ALL_BY_ID
+  }
+
+  private static final AtomicInteger poolNumber = new AtomicInteger();
+
+  private final PersonDao delegate;
+
+  private final ExecutorService executor;
+
+  /**
+   * Caps the calls in flight in virtual thread mode; null otherwise.
+   */
+  private final Semaphore inFlight;
+
+  private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+
+  private final LongAdder rejectedCount = new LongAdder();
+
+  public AsyncPersonDao(PersonDao delegate) {
+    this(delegate, DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param delegate
+   *          The PersonDao that does the real work.
+   * @param threads
+   *          The number of worker threads. Keep this at or below the
+   *          number of Connections the DataSource can hand out.
+   * @param queueCapacity
+   *          How many calls can wait for a free worker before new ones
+   *          are rejected.
+   */
+  public AsyncPersonDao(PersonDao delegate, int threads, int queueCapacity) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Threads must be at least 1, was " + threads);
+    }
+    if (queueCapacity < 1) {
+      throw new IllegalArgumentException("Queue capacity must be at least 1, was " + queueCapacity);
+    }
+    this.delegate = delegate;
+    this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity), new WorkerThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+    this.inFlight = null;
+    initStats();
+  }
+
+  private AsyncPersonDao(PersonDao delegate, ExecutorService executor, int maxInFlight) {
+    this.delegate = delegate;
+    this.executor = executor;
+    this.inFlight = new Semaphore(maxInFlight);
+    initStats();
+  }
+
+  private void initStats() {
+    for (Operation operation : Operation.values()) {
+      stats.put(operation, new OperationStats());
+    }
+  }
+
+  /**
+   * Creates a facade that runs each call on a new virtual thread, with at
+   * most DEFAULT_MAX_IN_FLIGHT calls in flight.
+   *
+   * @see #virtualThreads(PersonDao, int)
+   */
+  public static AsyncPersonDao virtualThreads(PersonDao delegate) {
+    return virtualThreads(delegate, DEFAULT_MAX_IN_FLIGHT);
+  }
+
+  /**
+   * Creates a facade that runs each call on a new virtual thread.
+   *
+   * Virtual threads are cheap, Connections are not: size the DataSource
+   * (e.g. dataSource.pool.maxSize) for the load, and expect calls past
+   * that to wait for a Connection rather than a thread.
+   *
+   * Calls only give up their carrier thread while they wait if the JDBC
+   * driver does not block inside synchronized code. Derby's embedded
+   * driver does (every statement runs in a synchronized block), so before
+   * JDK 24 each call pins its carrier for as long as it is in the driver,
+   * and no more calls run at once than there are carriers (one per CPU by
+   * default), whatever maxInFlight is. Keep maxInFlight at the pool size
+   * in that case. To check another driver, run with
+   * -Djdk.tracePinnedThreads=full, which prints a stack trace whenever a
+   * virtual thread blocks while pinned.
+   *
+   * @param delegate
+   *          The PersonDao that does the real work.
+   * @param maxInFlight
+   *          How many calls can be running or waiting for a Connection
+   *          before new ones are rejected.
+   * @throws UnsupportedOperationException
+   *           If the JVM does not have virtual threads (before JDK 21).
+   */
+  public static AsyncPersonDao virtualThreads(PersonDao delegate, int maxInFlight) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("Max in flight must be at least 1, was " + maxInFlight);
+    }
+    return new AsyncPersonDao(delegate, newVirtualThreadPerTaskExecutor(), maxInFlight);
+  }
+
+  /**
+   * @return boolean - true if this JVM has virtual threads (JDK 21 and
+   *         later), so virtualThreads() can be used.
+   */
+  public static boolean isVirtualThreadsSupported() {
+    try {
+      Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Looked up reflectively, because the project still compiles for Java 8.
+   */
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (NoSuchMethodException e) {
+      throw new UnsupportedOperationException(
+          "Virtual threads need JDK 21 or later, running on " + System.getProperty("java.version"), e);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Could not create virtual thread executor", e);
+    }
+  }
+
+  public PersonDao getDelegate() {
+    return delegate;
+  }
+
+  /**
+   * @return long - the number of calls turned away because the queue
+   *         was full, too many were in flight, or the facade was closed.
+   */
+  public long getRejectedCount() {
+    return rejectedCount.sum();
+  }
+
+  public OperationStats getStats(Operation operation) {
+    return stats.get(operation);
+  }
+
+  public CompletableFuture<List<Person>> findAllAsync() {
+    return submit(Operation.FIND_ALL, () -> delegate.findAll());
+  }
+
+  /**
+   * Runs PersonDao.forEach() on a worker thread, so the action is called
+   * on that thread too.
+   */
+  public CompletableFuture<Void> forEachAsync(Consumer<Person> action) {
+    return submit(Operation.FOR_EACH, () -> {
+      delegate.forEach(action);
+      return null;
+    });
+  }
+
+  public CompletableFuture<List<Person>> findPageAsync(Long afterId, int limit) {
+    return submit(Operation.FIND_PAGE, () -> delegate.findPage(afterId, limit));
+  }
+
+  public CompletableFuture<Person> findByIdAsync(Long id) {
+    return submit(Operation.FIND_BY_ID, () -> delegate.findById(id));
+  }
+
+  public CompletableFuture<Map<Long, Person>> findAllByIdAsync(Collection<Long> ids) {
+    return submit(Operation.FIND_ALL_BY_ID, () -> delegate.findAllById(ids));
+  }
+
+  public CompletableFuture<List<Person>> findAllByLastNameAsync(String lastName) {
+    return submit(Operation.FIND_ALL_BY_LAST_NAME, () -> delegate.findAllByLastName(lastName));
+  }
+
+  public CompletableFuture<List<Person>> findByCriteriaAsync(PersonCriteria criteria) {
+    return submit(Operation.FIND_BY_CRITERIA, () -> delegate.findByCriteria(criteria));
+  }
+
+  public CompletableFuture<Boolean> existsByIdAsync(Long id) {
+    return submit(Operation.EXISTS_BY_ID, () -> delegate.existsById(id));
+  }
+
+  public CompletableFuture<Long> countAllAsync() {
+    return submit(Operation.COUNT_ALL, () -> delegate.countAll());
+  }
+
+  public CompletableFuture<Long> countByLastNameAsync(String lastName) {
+    return submit(Operation.COUNT_BY_LAST_NAME, () -> delegate.countByLastName(lastName));
+  }
+
+  public CompletableFuture<Map<String, Integer>> countByAsync(PersonAttribute attribute) {
+    return submit(Operation.COUNT_BY, () -> delegate.countBy(attribute));
+  }
+
+  public CompletableFuture<Map<String, AgeStats>> ageStatsByAsync(PersonAttribute attribute) {
+    return submit(Operation.AGE_STATS_BY, () -> delegate.ageStatsBy(attribute));
+  }
+
+  public CompletableFuture<Person> addAsync(Person person) {
+    return submit(Operation.ADD, () -> delegate.add(person));
+  }
+
+  public CompletableFuture<List<Person>> addAllAsync(Collection<Person> people) {
+    return submit(Operation.ADD_ALL, () -> delegate.addAll(people));
+  }
+
+  public CompletableFuture<Boolean> updateAsync(Person person) {
+    return submit(Operation.UPDATE, () -> delegate.update(person));
+  }
+
+  public CompletableFuture<Person> deleteAsync(Person person) {
+    return submit(Operation.DELETE, () -> delegate.delete(person));
+  }
+
+  public CompletableFuture<Boolean> upsertAsync(Person person) {
+    return submit(Operation.UPSERT, () -> delegate.upsert(person));
+  }
+
+  public CompletableFuture<List<Boolean>> upsertAllAsync(Collection<Person> people) {
+    return submit(Operation.UPSERT_ALL, () -> delegate.upsertAll(people));
+  }
+
+  public CompletableFuture<BulkResult> updateAllAsync(Collection<Person> people) {
+    return submit(Operation.UPDATE_ALL, () -> delegate.updateAll(people));
+  }
+
+  public CompletableFuture<BulkResult> deleteAllByIdAsync(Collection<Long> ids) {
+    return submit(Operation.DELETE_ALL_BY_ID, () -> delegate.deleteAllById(ids));
+  }
+
+  /**
+   * @return boolean - true if calls run on virtual threads.
+   */
+  public boolean isVirtualThreads() {
+    return inFlight != null;
+  }
+
+  /**
+   * Stops accepting calls. Calls already accepted still run.
+   */
+  @Override
+  public void close() {
+    executor.shutdown();
+  }
+
+  private <T> CompletableFuture<T> submit(Operation operation, Supplier<T> call) {
+    OperationStats operationStats = stats.get(operation);
+    long submitted = System.nanoTime();
+    Supplier<T> task = call;
+    if (inFlight != null) {
+      if (!inFlight.tryAcquire()) {
+        return rejected(operation, new RejectedExecutionException("Too many calls in flight"));
+      }
+      task = () -> {
+        try {
+          return call.get();
+        } finally {
+          inFlight.release();
+        }
+      };
+    }
+    CompletableFuture<T> ret;
+    try {
+      ret = CompletableFuture.supplyAsync(task, executor);
+    } catch (RejectedExecutionException e) {
+      if (inFlight != null) {
+        inFlight.release();
+      }
+      return rejected(operation, e);
+    }
+    return ret.whenComplete((result, throwable) -> operationStats.record(System.nanoTime() - submitted,
+        throwable != null));
+  }
+
+  private <T> CompletableFuture<T> rejected(Operation operation, RejectedExecutionException e) {
+    rejectedCount.increment();
+    log.debug("Rejected " + operation + ", too much work outstanding", e);
+    CompletableFuture<T> ret = new CompletableFuture<>();
+    ret.completeExceptionally(e);
+    return ret;
+  }
+
+  /**
+   * Latency figures for one Operation.
+   */
+  public static final class OperationStats {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+    void record(long nanos, boolean failed) {
+      count.increment();
+      if (failed) {
+        failureCount.increment();
+      }
+      totalNanos.add(nanos);
+      maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * @return long - the number of calls completed, successfully or not.
+     */
+    public long getCount() {
+      return count.sum();
+    }
+
+    /**
+     * @return long - the number of calls that completed with an exception.
+     */
+    public long getFailureCount() {
+      return failureCount.sum();
+    }
+
+    public long getTotalNanos() {
+      return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+      return maxNanos.get();
+    }
+
+    public long getMeanNanos() {
+      long calls = getCount();
+      return (calls == 0) ? 0 : getTotalNanos() / calls;
+    }
+
+    @Override
+    public String toString() {
+      return "count=" + getCount() + ", failures=" + getFailureCount() + ", meanNanos=" + getMeanNanos()
+          + ", maxNanos=" + getMaxNanos();
+    }
+
+  }
+
+  /**
+   * Names the worker threads and makes them daemons, so a facade that is
+   * never closed does not keep the JVM alive.
+   */
+  private static class WorkerThreadFactory implements ThreadFactory {
+
+    private final String prefix = "AsyncPersonDao-" + poolNumber.incrementAndGet() + "-";
+
+    private final AtomicInteger threadNumber = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread ret = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+      ret.setDaemon(true);
+      return ret;
+    }
+
+  }
+
+}
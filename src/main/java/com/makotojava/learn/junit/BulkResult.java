@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.makotojava.learn.junit;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * What happened to each ID in a bulk write, such as PersonDao.updateAll()
+ * or PersonDao.deleteAllById(). IDs are kept in the order they were
+ * passed in.
+ *
+ * @author J Steven Perry
+ *
+ */
+public class BulkResult {
+
+  /**
+   * The outcome for a single ID.
+   */
+  public enum Outcome {
+    /**
+     * The row was written.
+     */
+    SUCCEEDED,
+    /**
+     * There is no row with the ID.
+     */
+    NOT_FOUND,
+    /**
+     * The chunk containing the ID was rolled back because of an error.
+     */
+    FAILED
+  }
+
+  private final Map<Long, Outcome> outcomes = new LinkedHashMap<>();
+
+  private final Map<Outcome, Integer> counts = new EnumMap<>(Outcome.class);
+
+  /**
+   * Records the outcome for the specified ID, replacing any earlier one.
+   */
+  void put(Long id, Outcome outcome) {
+    Outcome previous = outcomes.put(id, outcome);
+    if (previous != null) {
+      counts.merge(previous, -1, Integer::sum);
+    }
+    counts.merge(outcome, 1, Integer::sum);
+  }
+
+  /**
+   * @return Outcome - the outcome for the specified ID, or null if the ID
+   *         was not part of the bulk write.
+   */
+  public Outcome getOutcome(Long id) {
+    return outcomes.get(id);
+  }
+
+  /**
+   * @return Map<Long, Outcome> - every ID and its outcome, in input order.
+   */
+  public Map<Long, Outcome> getOutcomes() {
+    return Collections.unmodifiableMap(outcomes);
+  }
+
+  /**
+   * @return List<Long> - the IDs with the specified outcome, in input order.
+   */
+  public List<Long> getIds(Outcome outcome) {
+    return outcomes.entrySet().stream()
+        .filter(entry -> entry.getValue() == outcome)
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * @return int - the number of IDs with the specified outcome.
+   */
+  public int count(Outcome outcome) {
+    return counts.getOrDefault(outcome, 0);
+  }
+
+  /**
+   * @return boolean - true if every ID succeeded.
+   */
+  public boolean isAllSucceeded() {
+    return count(Outcome.SUCCEEDED) == outcomes.size();
+  }
+
+  @Override
+  public String toString() {
+    return "BulkResult [" + Outcome.SUCCEEDED + "=" + count(Outcome.SUCCEEDED) + ", " + Outcome.NOT_FOUND + "="
+        + count(Outcome.NOT_FOUND) + ", " + Outcome.FAILED + "=" + count(Outcome.FAILED) + "]";
+  }
+
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.makotojava.learn.junit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PersonDao decorator that keeps a read-through cache of Person objects
+ * by ID in front of another PersonDao.
+ *
+ * The cache is bounded by size (least recently used entries go first)
+ * and by time to live. It is split into independently locked segments
+ * so concurrent lookups of different IDs rarely wait on each other.
+ *
+ * findById() and findAllById() read through the cache, and update(),
+ * delete(), upsert() and the bulk versions invalidate it. Everything else
+ * goes straight to the delegate. add() and addAll() do not populate it:
+ * the Person they return is not what findById() loads (whenCreated is not
+ * set), so a new Person is cached the first time it is read back. A null
+ * ID is never cached.
+ * Cached Person objects are shared between callers, so do not modify
+ * them.
+ *
+ * @author J Steven Perry
+ *
+ */
+public class CachingPersonDao extends DelegatingPersonDao {
+
+  /**
+   * The default maximum number of cached Person objects.
+   */
+  public static final int DEFAULT_MAX_SIZE = 10000;
+
+  /**
+   * The default time to live of a cached Person object, in seconds.
+   */
+  public static final long DEFAULT_TTL_SECONDS = 300;
+
+  private static final int MAX_SEGMENTS = 16;
+
+  private final long ttlNanos;
+
+  private final Segment[] segments;
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+
+  public CachingPersonDao(PersonDao delegate) {
+    this(delegate, DEFAULT_MAX_SIZE, DEFAULT_TTL_SECONDS, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param delegate
+   *          The PersonDao that does the real work.
+   * @param maxSize
+   *          The maximum number of Person objects to cache.
+   * @param ttl
+   *          How long a Person object stays in the cache.
+   * @param ttlUnit
+   *          The unit of ttl.
+   */
+  public CachingPersonDao(PersonDao delegate, int maxSize, long ttl, TimeUnit ttlUnit) {
+    super(delegate);
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("Max size must be at least 1, was " + maxSize);
+    }
+    if (ttl < 1) {
+      throw new IllegalArgumentException("TTL must be at least 1, was " + ttl);
+    }
+    this.ttlNanos = ttlUnit.toNanos(ttl);
+    int segmentCount = Math.min(MAX_SEGMENTS, maxSize);
+    int segmentSize = (maxSize + segmentCount - 1) / segmentCount;
+    this.segments = new Segment[segmentCount];
+    for (int aa = 0; aa < segmentCount; aa++) {
+      segments[aa] = new Segment(segmentSize);
+    }
+  }
+
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  /**
+   * @return long - the number of Person objects dropped from the cache
+   *         because it was full or their time to live was up.
+   */
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+
+  /**
+   * @return int - the number of Person objects currently cached.
+   */
+  public int size() {
+    int ret = 0;
+    for (Segment segment : segments) {
+      ret += segment.size();
+    }
+    return ret;
+  }
+
+  /**
+   * Removes every Person object from the cache.
+   */
+  public void invalidateAll() {
+    for (Segment segment : segments) {
+      segment.clear();
+    }
+  }
+
+  @Override
+  public Person findById(Long id) {
+    if (id == null) {
+      return super.findById(id);
+    }
+    Segment segment = segmentFor(id);
+    Person ret = segment.get(id);
+    if (ret != null) {
+      hitCount.increment();
+    } else {
+      missCount.increment();
+      long version = segment.version();
+      ret = super.findById(id);
+      if (ret != null) {
+        // Skipped if an update() or delete() invalidated the segment while we were loading
+        segment.putIfVersion(id, ret, version);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Reads through the cache like findById(): only the IDs that are not
+   * cached go to the delegate, in a single call.
+   */
+  @Override
+  public Map<Long, Person> findAllById(Collection<Long> ids) {
+    Map<Long, Person> cached = new HashMap<>();
+    List<Long> missing = new ArrayList<>();
+    for (Long id : ids) {
+      if (id != null && !cached.containsKey(id)) {
+        Person person = segmentFor(id).get(id);
+        if (person != null) {
+          hitCount.increment();
+          cached.put(id, person);
+        } else {
+          missing.add(id);
+        }
+      }
+    }
+    Map<Long, Person> loaded = Collections.emptyMap();
+    if (!missing.isEmpty()) {
+      missCount.add(missing.size());
+      Map<Segment, Long> versions = new IdentityHashMap<>();
+      for (Segment segment : segments) {
+        versions.put(segment, segment.version());
+      }
+      loaded = super.findAllById(missing);
+      for (Person person : loaded.values()) {
+        Segment segment = segmentFor(person.getId());
+        segment.putIfVersion(person.getId(), person, versions.get(segment));
+      }
+    }
+    Map<Long, Person> ret = new LinkedHashMap<>();
+    for (Long id : ids) {
+      Person person = cached.containsKey(id) ? cached.get(id) : loaded.get(id);
+      if (person != null) {
+        ret.put(id, person);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * A cached Person exists, so only IDs that are not cached go to the
+   * delegate. Does not count towards the hit and miss counts.
+   */
+  @Override
+  public boolean existsById(Long id) {
+    return (id != null && segmentFor(id).get(id) != null) || super.existsById(id);
+  }
+
+  @Override
+  public boolean update(Person person) {
+    boolean ret = super.update(person);
+    // Invalidate whether or not the update worked: the cached copy may be stale either way
+    invalidate(person.getId());
+    return ret;
+  }
+
+  @Override
+  public Person delete(Person person) {
+    Person ret = super.delete(person);
+    invalidate(person.getId());
+    return ret;
+  }
+
+  /**
+   * The ID of an upserted Person is not returned, so it is looked up by
+   * name (one uc_1 index probe) and just that ID is invalidated.
+   */
+  @Override
+  public boolean upsert(Person person) {
+    boolean ret = super.upsert(person);
+    invalidate(super.findIdByName(person.getLastName(), person.getFirstName()));
+    return ret;
+  }
+
+  /**
+   * Looks up the IDs of every upserted Person in one call.
+   */
+  @Override
+  public List<Boolean> upsertAll(Collection<Person> people) {
+    List<Boolean> ret = super.upsertAll(people);
+    super.findIdsByName(people).forEach(this::invalidate);
+    return ret;
+  }
+
+  @Override
+  public BulkResult updateAll(Collection<Person> people) {
+    BulkResult ret = super.updateAll(people);
+    people.forEach(person -> invalidate(person.getId()));
+    return ret;
+  }
+
+  @Override
+  public BulkResult deleteAllById(Collection<Long> ids) {
+    BulkResult ret = super.deleteAllById(ids);
+    ids.forEach(this::invalidate);
+    return ret;
+  }
+
+  private void invalidate(Long id) {
+    if (id != null) {
+      segmentFor(id).remove(id);
+    }
+  }
+
+  private Segment segmentFor(Long id) {
+    int hash = id.hashCode();
+    // Spread the bits so sequential IDs land in different segments
+    hash ^= (hash >>> 16);
+    return segments[(hash & Integer.MAX_VALUE) % segments.length];
+  }
+
+  private static class Entry {
+    private final Person person;
+    private final long expiresAt;
+
+    Entry(Person person, long expiresAt) {
+      this.person = person;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  /**
+   * One independently locked slice of the cache. Access-ordered, so the
+   * eldest entry is the least recently used one.
+   */
+  private class Segment {
+
+    private final Map<Long, Entry> entries;
+
+    /**
+     * Bumped on every invalidation, so a load that raced with one can tell.
+     */
+    private long version;
+
+    Segment(int maxSize) {
+      entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+          boolean ret = size() > maxSize;
+          if (ret) {
+            evictionCount.increment();
+          }
+          return ret;
+        }
+      };
+    }
+
+    synchronized Person get(Long id) {
+      Person ret = null;
+      Entry entry = entries.get(id);
+      if (entry != null) {
+        if (entry.expiresAt - System.nanoTime() > 0) {
+          ret = entry.person;
+        } else {
+          entries.remove(id);
+          evictionCount.increment();
+        }
+      }
+      return ret;
+    }
+
+    synchronized void put(Long id, Person person) {
+      entries.put(id, new Entry(person, System.nanoTime() + ttlNanos));
+    }
+
+    synchronized void putIfVersion(Long id, Person person, long expectedVersion) {
+      if (version == expectedVersion) {
+        put(id, person);
+      }
+    }
+
+    synchronized long version() {
+      return version;
+    }
+
+    synchronized void remove(Long id) {
+      version++;
+      entries.remove(id);
+    }
+
+    synchronized void clear() {
+      version++;
+      entries.clear();
+    }
+
+    synchronized int size() {
+      return entries.size();
+    }
+
+  }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.makotojava.learn.junit;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Base class for PersonDao decorators. Passes every call through to the
+ * delegate; subclasses override just the calls they care about.
+ * 
+ * @author J Steven Perry
+ *
+ */
+public abstract class DelegatingPersonDao implements PersonDao {
+
+  private final PersonDao delegate;
+
+  protected DelegatingPersonDao(PersonDao delegate) {
+    if (delegate == null) {
+      throw new IllegalArgumentException("Delegate PersonDao cannot be null");
+    }
+    this.delegate = delegate;
+  }
+
+  public PersonDao getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public List<Person> findAll() {
+    return delegate.findAll();
+  }
+
+  @Override
+  public Stream<Person> streamAll() {
+    return delegate.streamAll();
+  }
+
+  @Override
+  public void forEach(Consumer<Person> action) {
+    delegate.forEach(action);
+  }
+
+  @Override
+  public List<Person> findPage(Long afterId, int limit) {
+    return delegate.findPage(afterId, limit);
+  }
+
+  @Override
+  public Person findById(Long id) {
+    return delegate.findById(id);
+  }
+
+  @Override
+  public Map<Long, Person> findAllById(Collection<Long> ids) {
+    return delegate.findAllById(ids);
+  }
+
+  @Override
+  public List<Person> findAllByLastName(String lastName) {
+    return delegate.findAllByLastName(lastName);
+  }
+
+  @Override
+  public List<Person> findAllByLastName(String lastName, Long afterId, int limit) {
+    return delegate.findAllByLastName(lastName, afterId, limit);
+  }
+
+  @Override
+  public List<Person> findByCriteria(PersonCriteria criteria) {
+    return delegate.findByCriteria(criteria);
+  }
+
+  @Override
+  public List<Person> findByCriteria(PersonCriteria criteria, Long afterId, int limit) {
+    return delegate.findByCriteria(criteria, afterId, limit);
+  }
+
+  @Override
+  public boolean existsById(Long id) {
+    return delegate.existsById(id);
+  }
+
+  @Override
+  public Long findIdByName(String lastName, String firstName) {
+    return delegate.findIdByName(lastName, firstName);
+  }
+
+  @Override
+  public List<Long> findIdsByName(Collection<Person> people) {
+    return delegate.findIdsByName(people);
+  }
+
+  @Override
+  public long countAll() {
+    return delegate.countAll();
+  }
+
+  @Override
+  public long countByLastName(String lastName) {
+    return delegate.countByLastName(lastName);
+  }
+
+  @Override
+  public Map<String, Integer> countBy(PersonAttribute attribute) {
+    return delegate.countBy(attribute);
+  }
+
+  @Override
+  public Map<String, AgeStats> ageStatsBy(PersonAttribute attribute) {
+    return delegate.ageStatsBy(attribute);
+  }
+
+  @Override
+  public Person add(Person person) {
+    return delegate.add(person);
+  }
+
+  @Override
+  public List<Person> addAll(Collection<Person> people) {
+    return delegate.addAll(people);
+  }
+
+  @Override
+  public List<Person> addAll(Stream<Person> people) {
+    return delegate.addAll(people);
+  }
+
+  @Override
+  public boolean update(Person person) {
+    return delegate.update(person);
+  }
+
+  @Override
+  public Person delete(Person person) {
+    return delegate.delete(person);
+  }
+
+  @Override
+  public boolean upsert(Person person) {
+    return delegate.upsert(person);
+  }
+
+  @Override
+  public List<Boolean> upsertAll(Collection<Person> people) {
+    return delegate.upsertAll(people);
+  }
+
+  @Override
+  public BulkResult updateAll(Collection<Person> people) {
+    return delegate.updateAll(people);
+  }
+
+  @Override
+  public BulkResult deleteAllById(Collection<Long> ids) {
+    return delegate.deleteAllById(ids);
+  }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.makotojava.learn.junit;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The eye colors a Person can have. Person stores eye color as a String
+ * (see Person.getEyeColor()), but any value matching one of these is
+ * stored as that constant's name() so every Person with, say, BLUE eyes
+ * shares one String.
+ * 
+ * @author J Steven Perry
+ *
+ */
+public enum EyeColor {
+  BLUE,
+  BROWN,
+  BLACK,
+  GOLD,
+  HAZEL,
+  UNKNOWN;
+
+  private static final Map<String, EyeColor> BY_NAME = new HashMap<>();
+
+  static {
+    for (EyeColor value : values()) {
+      BY_NAME.put(value.name(), value);
+    }
+  }
+
+  /**
+   * Looks up the EyeColor with the specified name.
+   * 
+   * @return EyeColor - the matching EyeColor, or null if there isn't one.
+   */
+  public static EyeColor of(String name) {
+    return name == null ? null : BY_NAME.get(name);
+  }
+
+  /**
+   * Returns the canonical String for the specified eye color: the name()
+   * of the matching EyeColor if there is one, otherwise the value itself.
+   */
+  public static String canonicalize(String eyeColor) {
+    EyeColor value = of(eyeColor);
+    return value == null ? eyeColor : value.name();
+  }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.makotojava.learn.junit;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The genders a Person can have. Works the same way as EyeColor.
+ * 
+ * @author J Steven Perry
+ *
+ */
+public enum Gender {
+  MALE,
+  FEMALE,
+  UNKNOWN;
+
+  private static final Map<String, Gender> BY_NAME = new HashMap<>();
+
+  static {
+    for (Gender value : values()) {
+      BY_NAME.put(value.name(), value);
+    }
+  }
+
+  /**
+   * Looks up the Gender with the specified name.
+   * 
+   * @return Gender - the matching Gender, or null if there isn't one.
+   */
+  public static Gender of(String name) {
+    return name == null ? null : BY_NAME.get(name);
+  }
+
+  /**
+   * Returns the canonical String for the specified gender: the name()
+   * of the matching Gender if there is one, otherwise the value itself.
+   */
+  public static String canonicalize(String gender) {
+    Gender value = of(gender);
+    return value == null ? gender : value.name();
+  }
+
+}
@@ -0,0 +1,454 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.makotojava.learn.junit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.apache.log4j.Logger;
+
+/**
+ * PersonDao decorator that keeps an in-memory index from last name to
+ * the IDs of the Person objects with that last name.
+ * 
+ * The index is kept up to date by add(), addAll(), update(), delete(),
+ * upsert() and the bulk versions, so ALL writes must go through this
+ * object. Call warmUp() to load it from the DB. Once it is warm,
+ * findIdsByLastName(), countByLastName() and existsById() are answered
+ * from memory, and findAllByLastName() and findByCriteria() skip the DB
+ * when nobody has the last name. verify() checks the index
+ * against the DB.
+ * 
+ * warmUp() can be called again at any time. The new index is built off to
+ * the side while the old one keeps answering, and writes made during the
+ * rebuild are replayed onto it before it takes over, so none are lost
+ * and rows deleted mid-scan do not come back.
+ * 
+ * @author J Steven Perry
+ *
+ */
+public class LastNameIndexedPersonDao extends DelegatingPersonDao {
+
+  private static final Logger log = Logger.getLogger(LastNameIndexedPersonDao.class);
+
+  /**
+   * The index lookups are answered from, or null until warmUp() has run.
+   * Replaced as a whole by warmUp(), never cleared.
+   */
+  private volatile Index index;
+
+  /**
+   * The writes made while warmUp() is building a new index, to be replayed
+   * onto it. Null when no rebuild is running. Guarded by journalLock.
+   */
+  private List<Consumer<Index>> journal;
+
+  private final ReentrantLock journalLock = new ReentrantLock();
+
+  /**
+   * Held for the whole of warmUp(), so only one rebuild runs at a time.
+   */
+  private final ReentrantLock warmUpLock = new ReentrantLock();
+
+  public LastNameIndexedPersonDao(PersonDao delegate) {
+    super(delegate);
+  }
+
+  /**
+   * Loads the index from the DB, one row at a time. Until this has been
+   * called, lookups fall through to the DB. If the index is already warm,
+   * it keeps answering lookups until the new one is ready.
+   */
+  public void warmUp() {
+    warmUpLock.lock();
+    try {
+      long start = System.currentTimeMillis();
+      journalLock.lock();
+      try {
+        journal = new ArrayList<>();
+      } finally {
+        journalLock.unlock();
+      }
+      Index fresh = new Index();
+      boolean scanned = false;
+      try {
+        forEach(person -> fresh.index(person.getId(), person.getLastName()));
+        scanned = true;
+      } finally {
+        journalLock.lock();
+        try {
+          if (scanned) {
+            // Writes that landed during the scan win over what the scan saw
+            journal.forEach(write -> write.accept(fresh));
+            index = fresh;
+          }
+          journal = null;
+        } finally {
+          journalLock.unlock();
+        }
+      }
+      log.info("Indexed " + fresh.lastNameById.size() + " Person objects in " + (System.currentTimeMillis() - start)
+          + "ms");
+    } finally {
+      warmUpLock.unlock();
+    }
+  }
+
+  public boolean isWarm() {
+    return index != null;
+  }
+
+  /**
+   * Compares the index with the DB.
+   * 
+   * @return Set<Long> - the IDs the index has wrong: missing, indexed
+   *         under the wrong last name, or no longer in the DB. Empty if
+   *         the index is consistent.
+   */
+  public Set<Long> verify() {
+    Set<Long> ret = new HashSet<>();
+    Index current = (index == null) ? new Index() : index;
+    Map<Long, String> expected = new HashMap<>();
+    forEach(person -> expected.put(person.getId(), person.getLastName()));
+    for (Map.Entry<Long, String> entry : expected.entrySet()) {
+      Long id = entry.getKey();
+      String lastName = entry.getValue();
+      Set<Long> ids = current.idsByLastName.get(lastName);
+      if (!lastName.equals(current.lastNameById.get(id)) || ids == null || !ids.contains(id)) {
+        ret.add(id);
+      }
+    }
+    for (Long id : current.lastNameById.keySet()) {
+      if (!expected.containsKey(id)) {
+        ret.add(id);
+      }
+    }
+    if (!ret.isEmpty()) {
+      log.error("Last name index is inconsistent for " + ret.size() + " IDs: " + ret);
+    }
+    return ret;
+  }
+
+  /**
+   * Find the IDs of all Person objects with the specified last name.
+   * Answered from memory once the index is warm.
+   * 
+   * @return Set<Long> - the IDs, or an empty Set if there are none (or
+   *         the last name is null).
+   */
+  public Set<Long> findIdsByLastName(String lastName) {
+    Set<Long> ret;
+    Index current = index;
+    if (lastName == null) {
+      ret = Collections.emptySet();
+    } else if (current != null) {
+      Set<Long> ids = current.idsByLastName.get(lastName);
+      ret = ids == null ? Collections.emptySet() : new HashSet<>(ids);
+    } else {
+      ret = new HashSet<>();
+      for (Person person : super.findAllByLastName(lastName)) {
+        ret.add(person.getId());
+      }
+    }
+    return ret;
+  }
+
+  @Override
+  public boolean existsById(Long id) {
+    boolean ret;
+    Index current = index;
+    if (id == null) {
+      ret = false;
+    } else if (current != null) {
+      ret = current.lastNameById.containsKey(id);
+    } else {
+      ret = super.existsById(id);
+    }
+    return ret;
+  }
+
+  /**
+   * Once the index is warm, only IDs that are in it go to the DB.
+   */
+  @Override
+  public Map<Long, Person> findAllById(Collection<Long> ids) {
+    Map<Long, Person> ret;
+    Index current = index;
+    if (current != null) {
+      List<Long> known = new ArrayList<>(ids.size());
+      for (Long id : ids) {
+        if (id != null && current.lastNameById.containsKey(id)) {
+          known.add(id);
+        }
+      }
+      ret = known.isEmpty() ? Collections.emptyMap() : super.findAllById(known);
+    } else {
+      ret = super.findAllById(ids);
+    }
+    return ret;
+  }
+
+  @Override
+  public long countByLastName(String lastName) {
+    long ret;
+    Index current = index;
+    if (lastName == null) {
+      ret = 0;
+    } else if (current != null) {
+      Set<Long> ids = current.idsByLastName.get(lastName);
+      ret = ids == null ? 0 : ids.size();
+    } else {
+      ret = super.countByLastName(lastName);
+    }
+    return ret;
+  }
+
+  @Override
+  public List<Person> findAllByLastName(String lastName) {
+    List<Person> ret;
+    if (isUnknown(lastName)) {
+      // Nobody has that name, no need to ask the DB
+      ret = Collections.emptyList();
+    } else {
+      ret = super.findAllByLastName(lastName);
+    }
+    return ret;
+  }
+
+  @Override
+  public List<Person> findAllByLastName(String lastName, Long afterId, int limit) {
+    List<Person> ret;
+    if (isUnknown(lastName)) {
+      ret = Collections.emptyList();
+    } else {
+      ret = super.findAllByLastName(lastName, afterId, limit);
+    }
+    return ret;
+  }
+
+  @Override
+  public List<Person> findByCriteria(PersonCriteria criteria) {
+    List<Person> ret;
+    if (criteria.getLastName() != null && isUnknown(criteria.getLastName())) {
+      ret = Collections.emptyList();
+    } else {
+      ret = super.findByCriteria(criteria);
+    }
+    return ret;
+  }
+
+  @Override
+  public List<Person> findByCriteria(PersonCriteria criteria, Long afterId, int limit) {
+    List<Person> ret;
+    if (criteria.getLastName() != null && isUnknown(criteria.getLastName())) {
+      ret = Collections.emptyList();
+    } else {
+      ret = super.findByCriteria(criteria, afterId, limit);
+    }
+    return ret;
+  }
+
+  /**
+   * @return boolean - true if the index is warm and nobody has the
+   *         specified last name. A null last name matches nobody.
+   */
+  private boolean isUnknown(String lastName) {
+    Index current = index;
+    return lastName == null || (current != null && !current.idsByLastName.containsKey(lastName));
+  }
+
+  @Override
+  public Person add(Person person) {
+    Person ret = super.add(person);
+    index(ret);
+    return ret;
+  }
+
+  @Override
+  public List<Person> addAll(Collection<Person> people) {
+    List<Person> ret = super.addAll(people);
+    ret.forEach(this::index);
+    return ret;
+  }
+
+  @Override
+  public List<Person> addAll(Stream<Person> people) {
+    List<Person> ret = super.addAll(people);
+    ret.forEach(this::index);
+    return ret;
+  }
+
+  @Override
+  public boolean update(Person person) {
+    boolean ret = super.update(person);
+    if (ret) {
+      index(person);
+    }
+    return ret;
+  }
+
+  @Override
+  public Person delete(Person person) {
+    Person ret = super.delete(person);
+    if (ret != null) {
+      unindex(person.getId());
+    }
+    return ret;
+  }
+
+  /**
+   * An upsert may add a Person, whose ID is not returned, so the ID is
+   * looked up by name (one uc_1 index probe) and indexed afterwards.
+   */
+  @Override
+  public boolean upsert(Person person) {
+    boolean ret = super.upsert(person);
+    if (ret) {
+      index(super.findIdByName(person.getLastName(), person.getFirstName()), person.getLastName());
+    }
+    return ret;
+  }
+
+  /**
+   * Looks up the IDs of every Person that was upserted in one call.
+   */
+  @Override
+  public List<Boolean> upsertAll(Collection<Person> people) {
+    List<Boolean> ret = super.upsertAll(people);
+    List<Person> upserted = new ArrayList<>(people.size());
+    int aa = 0;
+    for (Person person : people) {
+      if (ret.get(aa++)) {
+        upserted.add(person);
+      }
+    }
+    if (!upserted.isEmpty()) {
+      List<Long> ids = super.findIdsByName(upserted);
+      for (int bb = 0; bb < upserted.size(); bb++) {
+        index(ids.get(bb), upserted.get(bb).getLastName());
+      }
+    }
+    return ret;
+  }
+
+  @Override
+  public BulkResult updateAll(Collection<Person> people) {
+    BulkResult ret = super.updateAll(people);
+    for (Person person : people) {
+      if (ret.getOutcome(person.getId()) == BulkResult.Outcome.SUCCEEDED) {
+        index(person);
+      }
+    }
+    return ret;
+  }
+
+  @Override
+  public BulkResult deleteAllById(Collection<Long> ids) {
+    BulkResult ret = super.deleteAllById(ids);
+    ret.getIds(BulkResult.Outcome.SUCCEEDED).forEach(this::unindex);
+    return ret;
+  }
+
+  private void index(Person person) {
+    if (person != null) {
+      index(person.getId(), person.getLastName());
+    }
+  }
+
+  private void index(Long id, String lastName) {
+    if (id != null) {
+      write(current -> current.index(id, lastName));
+    }
+  }
+
+  private void unindex(Long id) {
+    write(current -> current.unindex(id));
+  }
+
+  /**
+   * Applies a write to the current index, and records it for the new one
+   * if warmUp() is building one.
+   */
+  private void write(Consumer<Index> write) {
+    Index current;
+    journalLock.lock();
+    try {
+      if (journal != null) {
+        journal.add(write);
+      }
+      current = index;
+    } finally {
+      journalLock.unlock();
+    }
+    if (current != null) {
+      write.accept(current);
+    }
+  }
+
+  /**
+   * The two maps that make up the index.
+   */
+  private static class Index {
+
+    private final Map<String, Set<Long>> idsByLastName = new ConcurrentHashMap<>();
+
+    private final Map<Long, String> lastNameById = new ConcurrentHashMap<>();
+
+    /**
+     * Indexes the specified ID under the specified last name, moving it if
+     * it was indexed under a different one.
+     */
+    void index(Long id, String lastName) {
+      String previousLastName = lastNameById.put(id, lastName);
+      // Add inside compute() so it cannot race with removeId() dropping the same entry
+      idsByLastName.compute(lastName, (key, ids) -> {
+        Set<Long> ret = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+        ret.add(id);
+        return ret;
+      });
+      if (previousLastName != null && !previousLastName.equals(lastName)) {
+        removeId(previousLastName, id);
+      }
+    }
+
+    void unindex(Long id) {
+      String lastName = lastNameById.remove(id);
+      if (lastName != null) {
+        removeId(lastName, id);
+      }
+    }
+
+    private void removeId(String lastName, Long id) {
+      // Drop the entry altogether once its last ID is gone
+      idsByLastName.computeIfPresent(lastName, (key, ids) -> {
+        ids.remove(id);
+        return ids.isEmpty() ? null : ids;
+      });
+    }
+
+  }
+
+}
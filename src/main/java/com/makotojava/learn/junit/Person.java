@@ -35,8 +35,9 @@ public class Person {
     this.lastName = lastName;
     this.firstName = firstName;
     this.age = age;
-    this.eyeColor = eyeColor;
-    this.gender = gender;
+    // Known values share one String each instead of one per Person
+    this.eyeColor = EyeColor.canonicalize(eyeColor);
+    this.gender = Gender.canonicalize(gender);
   }
 
   // ***********************
@@ -96,6 +97,22 @@ public class Person {
     return gender;
   }
 
+  /**
+   * @return EyeColor - the eye color as an EyeColor, or null if it
+   *         isn't one of them.
+   */
+  public EyeColor getEyeColorValue() {
+    return EyeColor.of(eyeColor);
+  }
+
+  /**
+   * @return Gender - the gender as a Gender, or null if it isn't one
+   *         of them.
+   */
+  public Gender getGenderValue() {
+    return Gender.of(gender);
+  }
+
   @Override
   public String toString() {
     return "Person [id=" + id + ", lastName=" + lastName + ", firstName=" + firstName + ", age=" + age + ", height="
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.makotojava.learn.junit;
+
+/**
+ * The Person attributes that PersonDao can group by, e.g. in countBy().
+ * 
+ * @author J Steven Perry
+ *
+ */
+public enum PersonAttribute {
+  LAST_NAME("last_name"),
+  EYE_COLOR("eye_color"),
+  GENDER("gender");
+
+  private final String columnName;
+
+  private PersonAttribute(String columnName) {
+    this.columnName = columnName;
+  }
+
+  /**
+   * @return String - the column in Person.TABLE_NAME that holds the
+   *         attribute.
+   */
+  public String getColumnName() {
+    return columnName;
+  }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.makotojava.learn.junit;
+
+/**
+ * Which Person objects PersonDao.findByCriteria() should return. Start
+ * from ALL and narrow it down, e.g.:
+ *
+ * PersonCriteria.ALL.ageBetween(30, 40).eyeColor(EyeColor.BLUE).gender(Gender.FEMALE)
+ *
+ * A Person must match every criterion that is set. PersonCriteria objects
+ * are immutable, so they can be kept in constants and shared.
+ *
+ * @author J Steven Perry
+ *
+ */
+public final class PersonCriteria {
+
+  /**
+   * Matches every Person.
+   */
+  public static final PersonCriteria ALL = new PersonCriteria(null, null, null, null, null);
+
+  private final String lastName;
+  private final Integer minAge;
+  private final Integer maxAge;
+  private final String eyeColor;
+  private final String gender;
+
+  private PersonCriteria(String lastName, Integer minAge, Integer maxAge, String eyeColor, String gender) {
+    this.lastName = lastName;
+    this.minAge = minAge;
+    this.maxAge = maxAge;
+    this.eyeColor = eyeColor;
+    this.gender = gender;
+  }
+
+  public PersonCriteria lastName(String lastName) {
+    return new PersonCriteria(lastName, minAge, maxAge, eyeColor, gender);
+  }
+
+  /**
+   * @return PersonCriteria - these criteria, also matching only ages
+   *         between minAge and maxAge (both inclusive).
+   */
+  public PersonCriteria ageBetween(int minAge, int maxAge) {
+    if (minAge > maxAge) {
+      throw new IllegalArgumentException("Min age " + minAge + " is greater than max age " + maxAge);
+    }
+    return new PersonCriteria(lastName, minAge, maxAge, eyeColor, gender);
+  }
+
+  public PersonCriteria eyeColor(EyeColor eyeColor) {
+    return eyeColor(eyeColor.name());
+  }
+
+  public PersonCriteria eyeColor(String eyeColor) {
+    return new PersonCriteria(lastName, minAge, maxAge, EyeColor.canonicalize(eyeColor), gender);
+  }
+
+  public PersonCriteria gender(Gender gender) {
+    return gender(gender.name());
+  }
+
+  public PersonCriteria gender(String gender) {
+    return new PersonCriteria(lastName, minAge, maxAge, eyeColor, Gender.canonicalize(gender));
+  }
+
+  /**
+   * @return String - the last name to match, or null to match any.
+   */
+  public String getLastName() {
+    return lastName;
+  }
+
+  /**
+   * @return Integer - the lowest age to match, or null if age is not a
+   *         criterion. Set together with getMaxAge().
+   */
+  public Integer getMinAge() {
+    return minAge;
+  }
+
+  /**
+   * @return Integer - the highest age to match, or null if age is not a
+   *         criterion. Set together with getMinAge().
+   */
+  public Integer getMaxAge() {
+    return maxAge;
+  }
+
+  /**
+   * @return String - the eye color to match, or null to match any.
+   */
+  public String getEyeColor() {
+    return eyeColor;
+  }
+
+  /**
+   * @return String - the gender to match, or null to match any.
+   */
+  public String getGender() {
+    return gender;
+  }
+
+  /**
+   * @return boolean - true if the specified Person meets these criteria.
+   */
+  public boolean matches(Person person) {
+    return (lastName == null || lastName.equals(person.getLastName()))
+        && (minAge == null || (person.getAge() >= minAge && person.getAge() <= maxAge))
+        && (eyeColor == null || eyeColor.equals(person.getEyeColor()))
+        && (gender == null || gender.equals(person.getGender()));
+  }
+
+  @Override
+  public String toString() {
+    return "PersonCriteria [lastName=" + lastName + ", minAge=" + minAge + ", maxAge=" + maxAge + ", eyeColor="
+        + eyeColor + ", gender=" + gender + "]";
+  }
+
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.makotojava.learn.junit;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.apache.log4j.Logger;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Loads Person rows from a CSV file into the Person table, for seeding
+ * large databases.
+ *
+ * Each line is last name, first name, age, eye color and gender, e.g.
+ *
+ * Wragdhen,Zelx,28,BLUE,MALE
+ *
+ * Values may be in double quotes (a quote inside one is doubled), and a
+ * quoted value may span lines. importFile() keeps the line breaks in it as
+ * they are; load() reads each one as "\n". The file may start with the
+ * header line
+ * "last_name,first_name,age,eye_color,gender". The file must be UTF-8.
+ *
+ * A CSV file written by PersonExporter loads too: it starts with the
+ * header line "id,when_created,last_name,first_name,age,eye_color,gender",
+ * and when it does, the id and when_created values in front of each line
+ * are skipped.
+ *
+ * There are two ways in:
+ *
+ * load() reads the file through a FileChannel and inserts it with
+ * batched prepared INSERTs, committing every batchSize rows and
+ * reporting progress after each batch. It works with any DB. If a line
+ * is bad, it stops there with an IllegalArgumentException that names the
+ * line; batches before it stay loaded.
+ *
+ * importFile() hands the whole file to Derby's SYSCS_IMPORT_DATA_BULK
+ * procedure, which is faster, but only reports progress once it is done
+ * and loads all or nothing. The file must be readable by the DB, which
+ * it is for embedded Derby.
+ *
+ * Either way the IDs (and creation times) are generated by the DB, and
+ * every other value is stored as it is in the file.
+ *
+ * @author J Steven Perry
+ *
+ */
+public class PersonCsvLoader {
+
+  private static final Logger log = Logger.getLogger(PersonCsvLoader.class);
+
+  /**
+   * Gets told how a load is going.
+   */
+  @FunctionalInterface
+  public interface ProgressListener {
+    /**
+     * Called after each committed batch, and once at the end.
+     *
+     * @param rowsLoaded
+     *          The number of rows loaded so far.
+     * @param bytesRead
+     *          How far through the file the load is, in bytes.
+     * @param totalBytes
+     *          The size of the file, in bytes.
+     */
+    void progress(long rowsLoaded, long bytesRead, long totalBytes);
+  }
+
+  /**
+   * The default number of rows per batch (and per commit) in load().
+   */
+  public static final int DEFAULT_BATCH_SIZE = 5000;
+
+  /**
+   * The header line a CSV file may start with.
+   */
+  public static final String HEADER = "last_name,first_name,age,eye_color,gender";
+
+  /**
+   * The header line PersonExporter starts a CSV file with.
+   */
+  public static final String EXPORT_HEADER = "id,when_created," + HEADER;
+
+  private static final int COLUMN_COUNT = 5;
+
+  /**
+   * The number of values in front of the HEADER ones in an exported file.
+   */
+  private static final int EXPORT_SKIPPED_COLUMNS = 2;
+
+  private static final int READ_BUFFER_SIZE = 1 << 16;
+
+  private static final String INSERT_SQL =
+      "INSERT INTO " + Person.TABLE_NAME + "(last_name, first_name, age, eye_color, gender) VALUES(?, ?, ?, ?, ?)";
+
+  private static final String IMPORT_SQL =
+      "CALL SYSCS_UTIL.SYSCS_IMPORT_DATA_BULK(NULL, ?, ?, NULL, ?, NULL, NULL, 'UTF-8', 0, ?)";
+
+  /**
+   * IMPORT_SQL for an exported file: only columns 3 to 7 of the file are
+   * imported.
+   */
+  private static final String IMPORT_EXPORTED_SQL =
+      "CALL SYSCS_UTIL.SYSCS_IMPORT_DATA_BULK(NULL, ?, ?, '3,4,5,6,7', ?, NULL, NULL, 'UTF-8', 0, ?)";
+
+  private static final String IMPORT_COLUMNS = "LAST_NAME,FIRST_NAME,AGE,EYE_COLOR,GENDER";
+
+  private static final String COUNT_SQL = "SELECT COUNT(*) FROM " + Person.TABLE_NAME;
+
+  private final JdbcTemplate jdbc;
+
+  private int batchSize = DEFAULT_BATCH_SIZE;
+
+  private ProgressListener progressListener = (rowsLoaded, bytesRead, totalBytes) -> {
+  };
+
+  public PersonCsvLoader(DataSource dataSource) {
+    this.jdbc = new JdbcTemplate(dataSource);
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Sets the number of rows load() inserts and commits at a time.
+   */
+  public void setBatchSize(int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be at least 1, was " + batchSize);
+    }
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Sets who gets told how a load is going. Progress is also logged every
+   * 10% of the file, whether or not a listener is set.
+   */
+  public void setProgressListener(ProgressListener progressListener) {
+    this.progressListener = progressListener;
+  }
+
+  /**
+   * Loads the specified CSV file with batched INSERTs.
+   *
+   * @return long - the number of rows loaded.
+   */
+  public long load(Path csvFile) throws IOException {
+    try (FileChannel channel = FileChannel.open(csvFile, StandardOpenOption.READ);
+        BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8.name()),
+            READ_BUFFER_SIZE)) {
+      Progress progress = new Progress(csvFile, channel.size());
+      return jdbc.execute((ConnectionCallback<Long>) con -> load(con, reader, channel, progress));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Loads the specified CSV file with Derby's bulk import.
+   *
+   * @return long - the number of rows loaded.
+   */
+  public long importFile(Path csvFile) throws IOException {
+    String header;
+    try (BufferedReader reader = Files.newBufferedReader(csvFile, StandardCharsets.UTF_8)) {
+      header = reader.readLine();
+    }
+    boolean exported = EXPORT_HEADER.equals(header);
+    int skip = (exported || HEADER.equals(header)) ? 1 : 0;
+    Progress progress = new Progress(csvFile, Files.size(csvFile));
+    long before = jdbc.queryForObject(COUNT_SQL, Long.class);
+    // Derby stores unquoted table names in upper case
+    jdbc.update(exported ? IMPORT_EXPORTED_SQL : IMPORT_SQL, Person.TABLE_NAME.toUpperCase(), IMPORT_COLUMNS,
+        csvFile.toAbsolutePath().toString(), skip);
+    long ret = jdbc.queryForObject(COUNT_SQL, Long.class) - before;
+    progress.report(ret, progress.totalBytes);
+    return ret;
+  }
+
+  private long load(Connection con, BufferedReader reader, FileChannel channel, Progress progress)
+      throws SQLException {
+    long ret = 0;
+    boolean autoCommit = con.getAutoCommit();
+    con.setAutoCommit(false);
+    try (PreparedStatement ps = con.prepareStatement(INSERT_SQL)) {
+      int batched = 0;
+      int lineNumber = 0;
+      int skipped = 0;
+      String line;
+      while ((line = readLine(reader)) != null) {
+        lineNumber++;
+        int firstLineNumber = lineNumber;
+        // An odd number of quotes means a quoted value runs on to the next line
+        while (isOpenQuote(line)) {
+          String next = readLine(reader);
+          if (next == null) {
+            throw badLine(firstLineNumber, "unterminated quote");
+          }
+          lineNumber++;
+          line = line + '\n' + next;
+        }
+        if (lineNumber == 1 && EXPORT_HEADER.equals(line)) {
+          skipped = EXPORT_SKIPPED_COLUMNS;
+          continue;
+        }
+        if (line.isEmpty() || (lineNumber == 1 && HEADER.equals(line))) {
+          continue;
+        }
+        String[] values = parseLine(line, firstLineNumber, skipped + COLUMN_COUNT);
+        ps.setString(1, values[skipped]);
+        ps.setString(2, values[skipped + 1]);
+        ps.setInt(3, parseAge(values[skipped + 2], firstLineNumber));
+        ps.setString(4, values[skipped + 3]);
+        ps.setString(5, values[skipped + 4]);
+        ps.addBatch();
+        if (++batched == batchSize) {
+          ret += commit(con, ps, batched);
+          batched = 0;
+          progress.report(ret, position(channel));
+        }
+      }
+      if (batched > 0) {
+        ret += commit(con, ps, batched);
+      }
+      progress.report(ret, progress.totalBytes);
+      return ret;
+    } catch (SQLException | RuntimeException e) {
+      con.rollback();
+      log.error("Load of " + progress.csvFile + " stopped after " + ret + " rows", e);
+      throw e;
+    } finally {
+      con.setAutoCommit(autoCommit);
+    }
+  }
+
+  private static int commit(Connection con, PreparedStatement ps, int batched) throws SQLException {
+    ps.executeBatch();
+    con.commit();
+    return batched;
+  }
+
+  /**
+   * Splits one CSV line into its values, of which there must be
+   * columnCount.
+   */
+  static String[] parseLine(String line, int lineNumber, int columnCount) {
+    String[] ret = new String[columnCount];
+    StringBuilder value = new StringBuilder();
+    int column = 0;
+    boolean quoted = false;
+    for (int aa = 0; aa < line.length(); aa++) {
+      char c = line.charAt(aa);
+      if (quoted) {
+        if (c != '"') {
+          value.append(c);
+        } else if (aa + 1 < line.length() && line.charAt(aa + 1) == '"') {
+          value.append(c);
+          aa++;
+        } else {
+          quoted = false;
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        if (column == columnCount - 1) {
+          throw badLine(lineNumber, "more than " + columnCount + " values");
+        }
+        ret[column++] = value.toString();
+        value.setLength(0);
+      } else {
+        value.append(c);
+      }
+    }
+    if (quoted) {
+      throw badLine(lineNumber, "unterminated quote");
+    }
+    if (column != columnCount - 1) {
+      throw badLine(lineNumber, (column + 1) + " values instead of " + columnCount);
+    }
+    ret[column] = value.toString();
+    return ret;
+  }
+
+  private static boolean isOpenQuote(String line) {
+    boolean ret = false;
+    for (int aa = 0; aa < line.length(); aa++) {
+      if (line.charAt(aa) == '"') {
+        ret = !ret;
+      }
+    }
+    return ret;
+  }
+
+  private static int parseAge(String age, int lineNumber) {
+    try {
+      return Integer.parseInt(age.trim());
+    } catch (NumberFormatException e) {
+      throw badLine(lineNumber, "age '" + age + "' is not a number");
+    }
+  }
+
+  private static IllegalArgumentException badLine(int lineNumber, String reason) {
+    return new IllegalArgumentException("Line " + lineNumber + ": " + reason);
+  }
+
+  private static String readLine(BufferedReader reader) {
+    try {
+      return reader.readLine();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static long position(FileChannel channel) {
+    try {
+      return channel.position();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Passes progress on to the listener, and logs it every 10% of the file.
+   */
+  private class Progress {
+    private final Path csvFile;
+    private final long totalBytes;
+    private final long start = System.currentTimeMillis();
+    private int loggedTenths;
+
+    Progress(Path csvFile, long totalBytes) {
+      this.csvFile = csvFile;
+      this.totalBytes = totalBytes;
+    }
+
+    void report(long rowsLoaded, long bytesRead) {
+      progressListener.progress(rowsLoaded, bytesRead, totalBytes);
+      int tenths = (totalBytes == 0) ? 10 : (int) (bytesRead * 10 / totalBytes);
+      if (tenths > loggedTenths) {
+        loggedTenths = tenths;
+        log.info("Loaded " + rowsLoaded + " rows from " + csvFile + " (" + tenths * 10 + "%) in "
+            + (System.currentTimeMillis() - start) + "ms");
+      }
+    }
+  }
+
+}
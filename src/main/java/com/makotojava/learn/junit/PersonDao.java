@@ -15,7 +15,11 @@
  */
 package com.makotojava.learn.junit;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Data Access Object for Person (objects)
@@ -33,6 +37,44 @@ public interface PersonDao {
    */
   public List<Person> findAll();
 
+  /**
+   * Stream all Person objects from the DB, one row at a time, so memory
+   * use does not depend on the size of the table.
+   * 
+   * The Stream holds a DB cursor open until it is closed, so ALWAYS
+   * use it in a try-with-resources block (or call close()).
+   * 
+   * @return Stream<Person> - a Stream of every Person object in the
+   *         data store.
+   */
+  public Stream<Person> streamAll();
+
+  /**
+   * Pass every Person object in the DB, one row at a time, to the
+   * specified Consumer. All DB resources are released before this
+   * method returns.
+   * 
+   * @param action
+   *          The Consumer that gets each Person object.
+   */
+  public void forEach(Consumer<Person> action);
+
+  /**
+   * Find one page of Person objects, in ID order. Pages are found by ID
+   * (keyset pagination), so fetching page 10,000 costs the same as
+   * fetching page 1.
+   * 
+   * @param afterId
+   *          The ID of the last Person object on the previous page, or
+   *          null to get the first page.
+   * @param limit
+   *          The maximum number of Person objects to return.
+   * 
+   * @return List<Person> - the Person objects whose ID comes after afterId,
+   *         at most limit of them, or an empty List if there are no more.
+   */
+  public List<Person> findPage(Long afterId, int limit);
+
   /**
    * Find the Person object by the specified ID.
    * 
@@ -44,6 +86,19 @@ public interface PersonDao {
    */
   public Person findById(Long id);
 
+  /**
+   * Find the Person objects with the specified IDs, a chunk of IDs per
+   * query rather than one query each.
+   * 
+   * @param ids
+   *          The unique IDs of the Person objects in the Repository.
+   *          Duplicates and nulls are ignored.
+   * 
+   * @return Map<Long, Person> - the Person objects found, by ID, in the
+   *         same order as ids. IDs that could not be found are left out.
+   */
+  public Map<Long, Person> findAllById(Collection<Long> ids);
+
   /**
    * Find all Person objects in the DB with the specified last name.
    * 
@@ -53,6 +108,125 @@ public interface PersonDao {
    */
   public List<Person> findAllByLastName(String lastName);
 
+  /**
+   * Find one page of Person objects with the specified last name, in ID
+   * order. Works like findPage(), so deep pages cost no more than the first.
+   * 
+   * @param lastName
+   *          The last name to match.
+   * @param afterId
+   *          The ID of the last Person object on the previous page, or
+   *          null to get the first page.
+   * @param limit
+   *          The maximum number of Person objects to return.
+   * 
+   * @return List<Person> - the matching Person objects whose ID comes after
+   *         afterId, at most limit of them, or an empty List if there are no more.
+   */
+  public List<Person> findAllByLastName(String lastName, Long afterId, int limit);
+
+  /**
+   * Find all Person objects in the DB that meet the specified criteria.
+   * The criteria are applied by the DB, not in memory.
+   * 
+   * @param criteria
+   *          The criteria to match, e.g.
+   *          PersonCriteria.ALL.ageBetween(30, 40).gender(Gender.FEMALE).
+   * 
+   * @return List<Person> - the matching Person objects, or an empty List
+   *         if no matches were found.
+   */
+  public List<Person> findByCriteria(PersonCriteria criteria);
+
+  /**
+   * Find one page of Person objects that meet the specified criteria, in
+   * ID order. Works like findPage().
+   * 
+   * @param criteria
+   *          The criteria to match.
+   * @param afterId
+   *          The ID of the last Person object on the previous page, or
+   *          null to get the first page.
+   * @param limit
+   *          The maximum number of Person objects to return.
+   * 
+   * @return List<Person> - the matching Person objects whose ID comes after
+   *         afterId, at most limit of them, or an empty List if there are no more.
+   */
+  public List<Person> findByCriteria(PersonCriteria criteria, Long afterId, int limit);
+
+  /**
+   * Find out whether there is a Person object with the specified ID,
+   * without reading it.
+   * 
+   * @param id
+   *          The unique ID of the Person object in the Repository
+   * 
+   * @return boolean - true if the Person object exists.
+   */
+  public boolean existsById(Long id);
+
+  /**
+   * Find the ID of the Person object with the specified last and first
+   * name (the uc_1 unique key), with a single index lookup.
+   * 
+   * @return Long - the ID, or null if there is no such Person object.
+   */
+  public Long findIdByName(String lastName, String firstName);
+
+  /**
+   * Find the IDs of the Person objects with the same last and first names
+   * as the specified ones, in a single call, e.g. after upsertAll().
+   * 
+   * @param people
+   *          The Person objects to look up. Their IDs are ignored.
+   * 
+   * @return List<Long> - for each Person, in the same order as the input,
+   *         its ID, or null if there is no such Person object.
+   */
+  public List<Long> findIdsByName(Collection<Person> people);
+
+  /**
+   * Count the Person objects in the DB, without reading them.
+   * 
+   * @return long - the number of Person objects in the data store.
+   */
+  public long countAll();
+
+  /**
+   * Count the Person objects in the DB with the specified last name,
+   * without reading them.
+   * 
+   * @param lastName
+   * @return long - the number of Person objects whose lastName matches
+   *         the specified last name.
+   */
+  public long countByLastName(String lastName);
+
+  /**
+   * Count the Person objects in the DB for each value of the specified
+   * attribute. The counting is done by the DB.
+   * 
+   * @param attribute
+   *          The attribute to group by.
+   * 
+   * @return Map<String, Integer> - the number of Person objects with each
+   *         value, in value order. Values nobody has are left out.
+   */
+  public Map<String, Integer> countBy(PersonAttribute attribute);
+
+  /**
+   * Work out age statistics for the Person objects in the DB, for each
+   * value of the specified attribute. The work is done by the DB.
+   * 
+   * @param attribute
+   *          The attribute to group by.
+   * 
+   * @return Map<String, AgeStats> - the statistics for each value, in
+   *         value order. Values nobody has are left out.
+   */
+  public Map<String, AgeStats> ageStatsBy(PersonAttribute attribute);
+
   /**
    * Add the specified Person object to the DB.
    * 
@@ -64,6 +238,31 @@ public interface PersonDao {
    */
   public Person add(Person person);
 
+  /**
+   * Add the specified Person objects to the DB, in batches.
+   * 
+   * @param people
+   *          The Person objects to add.
+   * 
+   * @return List<Person> - the Person objects just added (with their
+   *         generated IDs) in the same order as the input. An element
+   *         is null if the batch containing it could not be added.
+   */
+  public List<Person> addAll(Collection<Person> people);
+
+  /**
+   * Add the Person objects from the specified Stream to the DB, in
+   * batches. The Stream is consumed one batch at a time.
+   * 
+   * @param people
+   *          The Stream of Person objects to add.
+   * 
+   * @return List<Person> - the Person objects just added (with their
+   *         generated IDs) in the same order as the input. An element
+   *         is null if the batch containing it could not be added.
+   */
+  public List<Person> addAll(Stream<Person> people);
+
   /**
    * Updates the specified Person object, if it could be located
    * in the Repository.
@@ -86,4 +285,53 @@ public interface PersonDao {
    */
   public Person delete(Person person);
 
+  /**
+   * Adds the specified Person object, or updates the one with the same
+   * last and first name if there is one, in a single statement.
+   * 
+   * @param person
+   *          The Person object to add or update. Its ID is ignored.
+   * 
+   * @return boolean - true if the Person was added or updated, false if
+   *         there was a problem.
+   */
+  public boolean upsert(Person person);
+
+  /**
+   * Upserts the specified Person objects, in batches. Each batch is
+   * written in its own transaction.
+   * 
+   * @param people
+   *          The Person objects to add or update. Their IDs are ignored.
+   * 
+   * @return List<Boolean> - for each Person, in the same order as the
+   *         input, true if it was added or updated. An element is false
+   *         if the batch containing it could not be written.
+   */
+  public List<Boolean> upsertAll(Collection<Person> people);
+
+  /**
+   * Updates the specified Person objects, in batches. Each batch is
+   * written in its own transaction.
+   * 
+   * @param people
+   *          The Person objects with the new field value(s). Every one
+   *          must have an ID.
+   * 
+   * @return BulkResult - the outcome for each ID.
+   */
+  public BulkResult updateAll(Collection<Person> people);
+
+  /**
+   * Deletes the Person objects with the specified IDs, in batches. Each
+   * batch is written in its own transaction.
+   * 
+   * @param ids
+   *          The IDs of the Person objects to delete. Duplicates and nulls
+   *          are ignored.
+   * 
+   * @return BulkResult - the outcome for each ID (nulls left out).
+   */
+  public BulkResult deleteAllById(Collection<Long> ids);
+
 }
@@ -15,17 +15,45 @@
  */
 package com.makotojava.learn.junit;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.sql.DataSource;
 
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
 
 /**
@@ -39,74 +67,528 @@ public class PersonDaoBean implements PersonDao {
 
   private static final Logger log = Logger.getLogger(PersonDaoBean.class);
 
+  /**
+   * The default number of rows sent to the DB per batch by addAll(),
+   * upsertAll(), updateAll() and deleteAllById().
+   */
+  public static final int DEFAULT_BATCH_SIZE = 500;
+
+  /**
+   * The default maximum number of IDs per IN list in findAllById().
+   */
+  public static final int DEFAULT_IN_LIST_SIZE = 512;
+
+  /**
+   * The default number of rows fetched from the DB at a time by
+   * streamAll() and forEach().
+   */
+  public static final int DEFAULT_FETCH_SIZE = 100;
+
+  private static final String FIND_ALL_SQL = "SELECT " + PersonRowMapper.COLUMNS + " FROM " + Person.TABLE_NAME;
+
+  private static final String FIND_BY_ID_SQL = FIND_ALL_SQL + " WHERE id = ?";
+
+  private static final String FIND_ALL_BY_ID_SQL_PREFIX = FIND_ALL_SQL + " WHERE id IN (";
+
+  private static final String FIND_ALL_BY_LAST_NAME_SQL = FIND_ALL_SQL + " WHERE last_name = ?";
+
+  private static final String EXISTS_BY_ID_SQL = "SELECT 1 FROM " + Person.TABLE_NAME + " WHERE id = ?";
+
+  /**
+   * Probes the uc_1 index.
+   */
+  private static final String FIND_ID_BY_NAME_SQL =
+      "SELECT id FROM " + Person.TABLE_NAME + " WHERE last_name = ? AND first_name = ?";
+
+  private static final String COUNT_ALL_SQL = "SELECT COUNT(*) FROM " + Person.TABLE_NAME;
+
+  /**
+   * Answered from ix_person_last_name_id alone, without reading any rows.
+   */
+  private static final String COUNT_BY_LAST_NAME_SQL = COUNT_ALL_SQL + " WHERE last_name = ?";
+
+  private static final String FIND_PAGE_SQL = FIND_ALL_SQL + " WHERE id > ? ORDER BY id FETCH FIRST ? ROWS ONLY";
+
+  private static final String FIND_PAGE_BY_LAST_NAME_SQL =
+      FIND_ALL_SQL + " WHERE last_name = ? AND id > ? ORDER BY id FETCH FIRST ? ROWS ONLY";
+
+  private static final int CRITERIA_LAST_NAME = 1;
+  private static final int CRITERIA_AGE = 2;
+  private static final int CRITERIA_EYE_COLOR = 4;
+  private static final int CRITERIA_GENDER = 8;
+
+  /**
+   * The SQL for every combination of criteria, indexed by the CRITERIA_*
+   * bits that are set. Built once, so each combination always produces
+   * the same SQL string and its PreparedStatement can be cached.
+   */
+  private static final String[] FIND_BY_CRITERIA_SQL = buildCriteriaSql(false);
+
+  private static final String[] FIND_PAGE_BY_CRITERIA_SQL = buildCriteriaSql(true);
+
+  private static final Map<PersonAttribute, String> COUNT_BY_SQL = new EnumMap<>(PersonAttribute.class);
+
+  private static final Map<PersonAttribute, String> AGE_STATS_BY_SQL = new EnumMap<>(PersonAttribute.class);
+
+  static {
+    for (PersonAttribute attribute : PersonAttribute.values()) {
+      String column = attribute.getColumnName();
+      COUNT_BY_SQL.put(attribute, "SELECT " + column + ", COUNT(*) FROM " + Person.TABLE_NAME
+          + " GROUP BY " + column + " ORDER BY " + column);
+      // SUM as BIGINT, so a big table cannot overflow it
+      AGE_STATS_BY_SQL.put(attribute, "SELECT " + column + ", COUNT(*), MIN(age), MAX(age), SUM(CAST(age AS BIGINT))"
+          + " FROM " + Person.TABLE_NAME + " GROUP BY " + column + " ORDER BY " + column);
+    }
+  }
+
+  /**
+   * IDs start at 1, so every ID comes after this one.
+   */
+  private static final long FIRST_PAGE_AFTER_ID = 0L;
+
+  private static final String INSERT_SQL =
+      "INSERT INTO " + Person.TABLE_NAME + "(last_name, first_name, age, eye_color, gender) VALUES(?, ?, ?, ?, ?)";
+
+  /**
+   * Looks up the rows in the range of IDs generated for one addAll() batch.
+   */
+  private static final String FIND_IDS_BETWEEN_SQL =
+      "SELECT id, last_name, first_name FROM " + Person.TABLE_NAME + " WHERE id BETWEEN ? AND ?";
+
+  private static final String UPDATE_SQL = "UPDATE " + Person.TABLE_NAME
+      + " SET last_name = ?, first_name = ?, age = ?, eye_color = ?, gender = ? WHERE id = ?";
+
+  /**
+   * Updates the Person with the same last and first name (the uc_1 unique
+   * key) if there is one, otherwise inserts it. The dates are spelled out
+   * in the INSERT because Derby 10.13 cannot compile a MERGE that leaves
+   * them to their column defaults.
+   */
+  private static final String UPSERT_SQL = "MERGE INTO " + Person.TABLE_NAME + " t USING SYSIBM.SYSDUMMY1"
+      + " ON t.last_name = ? AND t.first_name = ?"
+      + " WHEN MATCHED THEN UPDATE SET age = ?, eye_color = ?, gender = ?"
+      + " WHEN NOT MATCHED THEN INSERT (last_name, first_name, age, eye_color, gender, when_created, when_last_updated)"
+      + " VALUES (?, ?, ?, ?, ?, CURRENT_DATE, CURRENT_DATE)";
+
+  private static final String DELETE_SQL = "DELETE FROM " + Person.TABLE_NAME + " WHERE id = ?";
+
+  /**
+   * Built once, when the DataSource is injected. JdbcTemplate is
+   * thread-safe once configured, so every call shares it.
+   */
+  private JdbcTemplate jdbcTemplate;
+
+  private int batchSize = DEFAULT_BATCH_SIZE;
+
+  private int fetchSize = DEFAULT_FETCH_SIZE;
+
+  private int inListSize = DEFAULT_IN_LIST_SIZE;
+
+  private Executor executor;
+
   @Autowired
-  private DataSource dataSource;
+  public void setDataSource(DataSource dataSource) {
+    this.jdbcTemplate = new JdbcTemplate(dataSource);
+  }
 
   /**
    * NPE preventer. NEVER use a raw class-level reference. Use
    * this getter instead.
    */
-  private DataSource getDataSource() {
-    if (dataSource == null) {
+  private JdbcTemplate getJdbcTemplate() {
+    if (jdbcTemplate == null) {
       throw new RuntimeException("DataSource is null (configuration error, perhaps?)");
     }
-    return dataSource;
+    return jdbcTemplate;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Sets the number of rows sent to the DB per batch by addAll(),
+   * upsertAll(), updateAll() and deleteAllById().
+   * 
+   * @param batchSize
+   *          The batch size. Must be at least 1.
+   */
+  public void setBatchSize(int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be at least 1, was " + batchSize);
+    }
+    this.batchSize = batchSize;
+  }
+
+  public int getFetchSize() {
+    return fetchSize;
+  }
+
+  /**
+   * Sets the number of rows fetched from the DB at a time by streamAll()
+   * and forEach().
+   * 
+   * @param fetchSize
+   *          The fetch size. Must be at least 1.
+   */
+  public void setFetchSize(int fetchSize) {
+    if (fetchSize < 1) {
+      throw new IllegalArgumentException("Fetch size must be at least 1, was " + fetchSize);
+    }
+    this.fetchSize = fetchSize;
+  }
+
+  public int getInListSize() {
+    return inListSize;
+  }
+
+  /**
+   * Sets the maximum number of IDs per IN list in findAllById().
+   * 
+   * @param inListSize
+   *          The IN list size. Must be at least 1.
+   */
+  public void setInListSize(int inListSize) {
+    if (inListSize < 1) {
+      throw new IllegalArgumentException("IN list size must be at least 1, was " + inListSize);
+    }
+    this.inListSize = inListSize;
+  }
+
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Sets the Executor findAllById() runs its IN list queries on, so they
+   * run in parallel. Each one uses its own Connection, so this only pays
+   * off with a pooled DataSource. If not set (the default), they run one
+   * after the other on the calling thread.
+   */
+  public void setExecutor(Executor executor) {
+    this.executor = executor;
   }
 
   @Override
   public List<Person> findAll() {
     List<Person> ret = null;
-    JdbcTemplate jdbc = new JdbcTemplate(getDataSource());
-    String sql = "SELECT * FROM " + Person.TABLE_NAME;
-    ret = jdbc.query(sql, new PersonRowMapper());
+    JdbcTemplate jdbc = getJdbcTemplate();
+    ret = jdbc.query(FIND_ALL_SQL, PersonRowMapper.INSTANCE);
     log.info("Found " + ret.size() + " rows from query");
     return ret;
 
   }
 
+  @Override
+  public Stream<Person> streamAll() {
+    JdbcTemplate jdbc = getJdbcTemplate();
+    DataSource dataSource = jdbc.getDataSource();
+    Connection con = DataSourceUtils.getConnection(dataSource);
+    PreparedStatement ps = null;
+    ResultSet rs = null;
+    try {
+      ps = prepareForwardOnly(con, FIND_ALL_SQL);
+      rs = ps.executeQuery();
+    } catch (SQLException e) {
+      JdbcUtils.closeResultSet(rs);
+      JdbcUtils.closeStatement(ps);
+      DataSourceUtils.releaseConnection(con, dataSource);
+      throw jdbc.getExceptionTranslator().translate("streamAll", FIND_ALL_SQL, e);
+    }
+    PersonSpliterator spliterator = new PersonSpliterator(jdbc, con, ps, rs);
+    return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+  }
+
+  @Override
+  public void forEach(Consumer<Person> action) {
+    getJdbcTemplate().query(con -> prepareForwardOnly(con, FIND_ALL_SQL), new RowCallbackHandler() {
+      private int rowNum;
+
+      @Override
+      public void processRow(ResultSet rs) throws SQLException {
+        action.accept(PersonRowMapper.INSTANCE.mapRow(rs, rowNum++));
+      }
+    });
+  }
+
+  /**
+   * Prepares a forward-only, read-only statement that fetches fetchSize
+   * rows at a time, so the driver never holds more than that in memory.
+   */
+  private PreparedStatement prepareForwardOnly(Connection con, String sql) throws SQLException {
+    PreparedStatement ret = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    ret.setFetchSize(fetchSize);
+    return ret;
+  }
+
+  @Override
+  public List<Person> findPage(Long afterId, int limit) {
+    Object[] args = { afterId == null ? FIRST_PAGE_AFTER_ID : afterId, checkLimit(limit) };
+    return getJdbcTemplate().query(FIND_PAGE_SQL, args, PersonRowMapper.INSTANCE);
+  }
+
   @Override
   public Person findById(Long id) {
     Person ret = null;
-    JdbcTemplate jdbc = new JdbcTemplate(getDataSource());
-    String sql = "SELECT * FROM " + Person.TABLE_NAME + " WHERE id = ?";
+    JdbcTemplate jdbc = getJdbcTemplate();
     Object[] args = { id };
-    List<Person> people = jdbc.query(sql, args, new PersonRowMapper());
+    List<Person> people = jdbc.query(FIND_BY_ID_SQL, args, PersonRowMapper.INSTANCE);
     if (people != null && !people.isEmpty()) {
       ret = people.get(0);
     }
     return ret;
   }
 
+  @Override
+  public Map<Long, Person> findAllById(Collection<Long> ids) {
+    List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+    distinctIds.remove(null);
+    List<List<Long>> chunks = new ArrayList<>();
+    for (int from = 0; from < distinctIds.size(); from += inListSize) {
+      chunks.add(distinctIds.subList(from, Math.min(from + inListSize, distinctIds.size())));
+    }
+    Map<Long, Person> found = new HashMap<>();
+    if (executor == null || chunks.size() < 2) {
+      chunks.forEach(chunk -> findChunk(chunk).forEach(person -> found.put(person.getId(), person)));
+    } else {
+      List<CompletableFuture<List<Person>>> futures = new ArrayList<>(chunks.size());
+      for (List<Long> chunk : chunks) {
+        futures.add(CompletableFuture.supplyAsync(() -> findChunk(chunk), executor));
+      }
+      for (CompletableFuture<List<Person>> future : futures) {
+        // join() wraps failures in a CompletionException, so hand back the original
+        try {
+          future.join().forEach(person -> found.put(person.getId(), person));
+        } catch (CompletionException e) {
+          throw (e.getCause() instanceof RuntimeException) ? (RuntimeException) e.getCause() : e;
+        }
+      }
+    }
+    // Same order as the IDs were passed in
+    Map<Long, Person> ret = new LinkedHashMap<>();
+    for (Long id : distinctIds) {
+      Person person = found.get(id);
+      if (person != null) {
+        ret.put(id, person);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Looks up one chunk of IDs with a single IN list query. The list is
+   * padded (by repeating the last ID) to the next power of two, capped at
+   * inListSize, so only a handful of SQL strings are ever sent and their
+   * PreparedStatements can be cached.
+   */
+  private List<Person> findChunk(List<Long> ids) {
+    Object[] args = padInList(ids);
+    return getJdbcTemplate().query(inListSql(FIND_ALL_BY_ID_SQL_PREFIX, args.length), args,
+        PersonRowMapper.INSTANCE);
+  }
+
+  /**
+   * Pads the specified values (by repeating the last one) to the next
+   * power of two, capped at inListSize.
+   */
+  private Object[] padInList(List<?> values) {
+    int size = Math.min(Integer.highestOneBit(values.size() * 2 - 1), inListSize);
+    Object[] ret = new Object[size];
+    for (int aa = 0; aa < size; aa++) {
+      ret[aa] = values.get(Math.min(aa, values.size() - 1));
+    }
+    return ret;
+  }
+
+  private static String inListSql(String prefix, int size) {
+    StringBuilder ret = new StringBuilder(prefix);
+    for (int aa = 0; aa < size; aa++) {
+      ret.append(aa == 0 ? "?" : ", ?");
+    }
+    return ret.append(')').toString();
+  }
+
   @Override
   public List<Person> findAllByLastName(String lastName) {
     List<Person> ret = null;
-    JdbcTemplate jdbc = new JdbcTemplate(getDataSource());
-    String sql = "SELECT * FROM " + Person.TABLE_NAME + " WHERE last_name = ?";
+    JdbcTemplate jdbc = getJdbcTemplate();
     Object[] args = { lastName };
-    ret = jdbc.query(sql, args, new PersonRowMapper());
+    ret = jdbc.query(FIND_ALL_BY_LAST_NAME_SQL, args, PersonRowMapper.INSTANCE);
     log.info("Found " + ret.size() + " rows from query");
     return ret;
   }
 
+  @Override
+  public List<Person> findAllByLastName(String lastName, Long afterId, int limit) {
+    Object[] args = { lastName, afterId == null ? FIRST_PAGE_AFTER_ID : afterId, checkLimit(limit) };
+    return getJdbcTemplate().query(FIND_PAGE_BY_LAST_NAME_SQL, args, PersonRowMapper.INSTANCE);
+  }
+
+  @Override
+  public List<Person> findByCriteria(PersonCriteria criteria) {
+    List<Object> args = new ArrayList<>();
+    int shape = bindCriteria(criteria, args);
+    return getJdbcTemplate().query(FIND_BY_CRITERIA_SQL[shape], args.toArray(), PersonRowMapper.INSTANCE);
+  }
+
+  @Override
+  public List<Person> findByCriteria(PersonCriteria criteria, Long afterId, int limit) {
+    List<Object> args = new ArrayList<>();
+    int shape = bindCriteria(criteria, args);
+    args.add(afterId == null ? FIRST_PAGE_AFTER_ID : afterId);
+    args.add(checkLimit(limit));
+    return getJdbcTemplate().query(FIND_PAGE_BY_CRITERIA_SQL[shape], args.toArray(), PersonRowMapper.INSTANCE);
+  }
+
+  /**
+   * Adds the values of the criteria that are set to args, in the order
+   * buildCriteriaSql() expects them.
+   * 
+   * @return int - the CRITERIA_* bits for the criteria that are set.
+   */
+  private static int bindCriteria(PersonCriteria criteria, List<Object> args) {
+    int ret = 0;
+    if (criteria.getLastName() != null) {
+      ret |= CRITERIA_LAST_NAME;
+      args.add(criteria.getLastName());
+    }
+    if (criteria.getMinAge() != null) {
+      ret |= CRITERIA_AGE;
+      args.add(criteria.getMinAge());
+      args.add(criteria.getMaxAge());
+    }
+    if (criteria.getEyeColor() != null) {
+      ret |= CRITERIA_EYE_COLOR;
+      args.add(criteria.getEyeColor());
+    }
+    if (criteria.getGender() != null) {
+      ret |= CRITERIA_GENDER;
+      args.add(criteria.getGender());
+    }
+    return ret;
+  }
+
+  private static String[] buildCriteriaSql(boolean paged) {
+    String[] ret = new String[CRITERIA_GENDER * 2];
+    for (int shape = 0; shape < ret.length; shape++) {
+      List<String> conditions = new ArrayList<>();
+      if ((shape & CRITERIA_LAST_NAME) != 0) {
+        conditions.add("last_name = ?");
+      }
+      if ((shape & CRITERIA_AGE) != 0) {
+        conditions.add("age BETWEEN ? AND ?");
+      }
+      if ((shape & CRITERIA_EYE_COLOR) != 0) {
+        conditions.add("eye_color = ?");
+      }
+      if ((shape & CRITERIA_GENDER) != 0) {
+        conditions.add("gender = ?");
+      }
+      if (paged) {
+        conditions.add("id > ?");
+      }
+      StringBuilder sql = new StringBuilder(FIND_ALL_SQL);
+      if (!conditions.isEmpty()) {
+        sql.append(" WHERE ").append(String.join(" AND ", conditions));
+      }
+      if (paged) {
+        sql.append(" ORDER BY id FETCH FIRST ? ROWS ONLY");
+      }
+      ret[shape] = sql.toString();
+    }
+    return ret;
+  }
+
+  @Override
+  public boolean existsById(Long id) {
+    Object[] args = { id };
+    return getJdbcTemplate().query(EXISTS_BY_ID_SQL, args, (ResultSetExtractor<Boolean>) ResultSet::next);
+  }
+
+  @Override
+  public Long findIdByName(String lastName, String firstName) {
+    List<Long> ids = getJdbcTemplate().queryForList(FIND_ID_BY_NAME_SQL, Long.class, lastName, firstName);
+    return ids.isEmpty() ? null : ids.get(0);
+  }
+
+  /**
+   * Runs the uc_1 probe once per Person on one Connection, preparing it
+   * once.
+   */
+  @Override
+  public List<Long> findIdsByName(Collection<Person> people) {
+    if (people.isEmpty()) {
+      return new ArrayList<>();
+    }
+    return getJdbcTemplate().execute((ConnectionCallback<List<Long>>) con -> {
+      List<Long> ret = new ArrayList<>(people.size());
+      try (PreparedStatement ps = con.prepareStatement(FIND_ID_BY_NAME_SQL)) {
+        for (Person person : people) {
+          ps.setString(1, person.getLastName());
+          ps.setString(2, person.getFirstName());
+          try (ResultSet rs = ps.executeQuery()) {
+            ret.add(rs.next() ? rs.getLong(1) : null);
+          }
+        }
+      }
+      return ret;
+    });
+  }
+
+  @Override
+  public long countAll() {
+    return getJdbcTemplate().queryForObject(COUNT_ALL_SQL, Long.class);
+  }
+
+  @Override
+  public long countByLastName(String lastName) {
+    Object[] args = { lastName };
+    return getJdbcTemplate().queryForObject(COUNT_BY_LAST_NAME_SQL, args, Long.class);
+  }
+
+  @Override
+  public Map<String, Integer> countBy(PersonAttribute attribute) {
+    Map<String, Integer> ret = new LinkedHashMap<>();
+    getJdbcTemplate().query(COUNT_BY_SQL.get(attribute), (RowCallbackHandler) rs -> {
+      ret.put(rs.getString(1), rs.getInt(2));
+    });
+    return ret;
+  }
+
+  @Override
+  public Map<String, AgeStats> ageStatsBy(PersonAttribute attribute) {
+    Map<String, AgeStats> ret = new LinkedHashMap<>();
+    getJdbcTemplate().query(AGE_STATS_BY_SQL.get(attribute), (RowCallbackHandler) rs -> {
+      ret.put(rs.getString(1), new AgeStats(rs.getInt(2), rs.getInt(3), rs.getInt(4), rs.getLong(5)));
+    });
+    return ret;
+  }
+
+  private static int checkLimit(int limit) {
+    if (limit < 1) {
+      throw new IllegalArgumentException("Limit must be at least 1, was " + limit);
+    }
+    return limit;
+  }
+
   @Override
   public Person add(Person person) {
     Person ret = null;
-    JdbcTemplate jdbc = new JdbcTemplate(getDataSource());
-    String sql =
-        "INSERT INTO " + Person.TABLE_NAME + "(last_name, first_name, age, eye_color, gender) VALUES(?, ?, ?, ?, ?)";
-    Object[] paramValues =
-        { person.getLastName(), person.getFirstName(), person.getAge(), person.getEyeColor(), person.getGender() };
+    JdbcTemplate jdbc = getJdbcTemplate();
+    KeyHolder keyHolder = new GeneratedKeyHolder();
     try {
-      int numRowsAffected = jdbc.update(sql, paramValues);
+      int numRowsAffected = jdbc.update(con -> {
+        PreparedStatement ps = con.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS);
+        ps.setString(1, person.getLastName());
+        ps.setString(2, person.getFirstName());
+        ps.setInt(3, person.getAge());
+        ps.setString(4, person.getEyeColor());
+        ps.setString(5, person.getGender());
+        return ps;
+      }, keyHolder);
       if (numRowsAffected == 1) {
-        // Find the Person we just added. equals() should do the trick.
-        List<Person> people = findAllByLastName(person.getLastName());
-        for (Person p : people) {
-          if (p.equals(person)) {
-            ret = p;
-            break;
-          }
-        }
+        // The generated key is the ID of the Person we just added
+        ret = copyOf(person, keyHolder.getKey().longValue());
       } else {
         String message = "Expected 1 row to be affected by INSERT, instead " + numRowsAffected
             + " were affected (DB configuration error, maybe?)";
@@ -119,18 +601,154 @@ public class PersonDaoBean implements PersonDao {
     return ret;
   }
 
+  @Override
+  public List<Person> addAll(Collection<Person> people) {
+    return addAll(people.stream());
+  }
+
+  @Override
+  public List<Person> addAll(Stream<Person> people) {
+    List<Person> ret = new ArrayList<>();
+    JdbcTemplate jdbc = getJdbcTemplate();
+    List<Person> batch = new ArrayList<>(batchSize);
+    Iterator<Person> iterator = people.iterator();
+    while (iterator.hasNext()) {
+      batch.add(iterator.next());
+      if (batch.size() == batchSize || !iterator.hasNext()) {
+        long start = System.currentTimeMillis();
+        ret.addAll(addBatch(jdbc, batch));
+        log.info("Added batch of " + batch.size() + " rows in " + (System.currentTimeMillis() - start) + "ms");
+        batch.clear();
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Inserts one batch of Person objects in a single transaction.
+   * 
+   * Derby only reports the generated key of the last row in a batch, and
+   * IDENTITY values are not guaranteed to be contiguous, so the first row
+   * is inserted on its own to get its key, and the IDs in between are read
+   * back by last and first name (the uc_1 unique key) before the
+   * transaction commits. Only the rows between the first and last keys
+   * are read, so the read-back does not grow with the table.
+   * 
+   * @return List<Person> - copies of the batch with their IDs, in batch
+   *         order, or all nulls if the batch could not be added.
+   */
+  private List<Person> addBatch(JdbcTemplate jdbc, List<Person> batch) {
+    List<Person> ret = new ArrayList<>(batch.size());
+    try {
+      long[] ids = jdbc.execute((ConnectionCallback<long[]>) con -> {
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        try (PreparedStatement ps = con.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+          setInsertValues(ps, batch.get(0));
+          ps.executeUpdate();
+          long firstId = generatedKey(ps);
+          long[] added;
+          if (batch.size() == 1) {
+            added = new long[] { firstId };
+          } else {
+            for (Person person : batch.subList(1, batch.size())) {
+              setInsertValues(ps, person);
+              ps.addBatch();
+            }
+            ps.executeBatch();
+            added = findAddedIds(con, batch, firstId, generatedKey(ps));
+          }
+          con.commit();
+          return added;
+        } catch (SQLException e) {
+          con.rollback();
+          throw e;
+        } finally {
+          con.setAutoCommit(autoCommit);
+        }
+      });
+      for (int aa = 0; aa < batch.size(); aa++) {
+        ret.add(copyOf(batch.get(aa), ids[aa]));
+      }
+    } catch (DataAccessException e) {
+      String message = "Exception occurred while inserting batch of " + batch.size() + " records";
+      log.error(message, e);
+      ret.addAll(Collections.nCopies(batch.size(), null));
+    }
+    return ret;
+  }
+
+  private static void setInsertValues(PreparedStatement ps, Person person) throws SQLException {
+    ps.setString(1, person.getLastName());
+    ps.setString(2, person.getFirstName());
+    ps.setInt(3, person.getAge());
+    ps.setString(4, person.getEyeColor());
+    ps.setString(5, person.getGender());
+  }
+
+  /**
+   * @return long - the key generated by the last INSERT the specified
+   *         statement ran (for a batch, its last row).
+   */
+  private static long generatedKey(PreparedStatement ps) throws SQLException {
+    try (ResultSet rs = ps.getGeneratedKeys()) {
+      if (rs == null || !rs.next()) {
+        throw new SQLException("No generated key reported for INSERT");
+      }
+      return rs.getLong(1);
+    }
+  }
+
+  /**
+   * Looks up the IDs of the specified Person objects, just added on the
+   * specified Connection, among the rows between the first and last keys
+   * generated for them.
+   * 
+   * @return long[] - the IDs, in batch order.
+   */
+  private static long[] findAddedIds(Connection con, List<Person> batch, long firstId, long lastId)
+      throws SQLException {
+    Map<String, Integer> positions = new HashMap<>();
+    for (int aa = 0; aa < batch.size(); aa++) {
+      Person person = batch.get(aa);
+      positions.put(uniqueKey(person.getLastName(), person.getFirstName()), aa);
+    }
+    long[] ret = new long[batch.size()];
+    int found = 0;
+    try (PreparedStatement ps = con.prepareStatement(FIND_IDS_BETWEEN_SQL)) {
+      // The IDENTITY increment may be negative
+      ps.setLong(1, Math.min(firstId, lastId));
+      ps.setLong(2, Math.max(firstId, lastId));
+      try (ResultSet rs = ps.executeQuery()) {
+        while (rs.next()) {
+          // Rows other callers added in the meantime can fall in the range too
+          Integer position = positions.get(uniqueKey(rs.getString(2), rs.getString(3)));
+          if (position != null) {
+            ret[position] = rs.getLong(1);
+            found++;
+          }
+        }
+      }
+    }
+    if (found != batch.size()) {
+      throw new SQLException("Found " + found + " of the " + batch.size() + " rows just added");
+    }
+    return ret;
+  }
+
+  private static String uniqueKey(String lastName, String firstName) {
+    return lastName + '\u0000' + firstName;
+  }
+
   @Override
   public boolean update(Person person) {
     boolean ret = false;
-    JdbcTemplate jdbc = new JdbcTemplate(getDataSource());
-    String sql =
-        "UPDATE " + Person.TABLE_NAME
-            + " SET last_name = ?, first_name = ?, age = ?, eye_color = ?, gender = ? WHERE id = ?";
+    JdbcTemplate jdbc = getJdbcTemplate();
     Object[] paramValues =
         { person.getLastName(), person.getFirstName(), person.getAge(), person.getEyeColor(), person.getGender(),
             person.getId() };
     try {
-      int numRowsAffected = jdbc.update(sql, paramValues);
+      int numRowsAffected = jdbc.update(UPDATE_SQL, paramValues);
       if (numRowsAffected == 1) {
         ret = true;
       } else {
@@ -148,10 +766,9 @@ public class PersonDaoBean implements PersonDao {
   @Override
   public Person delete(Person person) {
     Person ret = null;
-    JdbcTemplate jdbc = new JdbcTemplate(getDataSource());
-    String sql = "DELETE FROM " + Person.TABLE_NAME + " WHERE id = ?";
+    JdbcTemplate jdbc = getJdbcTemplate();
     Object[] args = { person.getId() };
-    int numRowsAffected = jdbc.update(sql, args);
+    int numRowsAffected = jdbc.update(DELETE_SQL, args);
     if (numRowsAffected == 1) {
       ret = person;
     } else {
@@ -162,20 +779,207 @@ public class PersonDaoBean implements PersonDao {
     return ret;
   }
 
-  private class PersonRowMapper implements RowMapper<Person> {
+  @Override
+  public boolean upsert(Person person) {
+    boolean ret = false;
+    try {
+      int numRowsAffected = getJdbcTemplate().update(con -> {
+        PreparedStatement ps = con.prepareStatement(UPSERT_SQL);
+        setUpsertValues(ps, person);
+        return ps;
+      });
+      if (numRowsAffected == 1) {
+        ret = true;
+      } else {
+        String message = "Expected 1 row to be affected by MERGE, instead " + numRowsAffected
+            + " were affected (DB configuration error, maybe?)";
+        log.error(message);
+      }
+    } catch (DataAccessException e) {
+      String message = "Exception occurred while upserting record";
+      log.error(message, e);
+    }
+    return ret;
+  }
+
+  @Override
+  public List<Boolean> upsertAll(Collection<Person> people) {
+    List<Boolean> ret = new ArrayList<>(people.size());
+    JdbcTemplate jdbc = getJdbcTemplate();
+    List<Person> items = new ArrayList<>(people);
+    for (int from = 0; from < items.size(); from += batchSize) {
+      List<Person> batch = items.subList(from, Math.min(from + batchSize, items.size()));
+      long start = System.currentTimeMillis();
+      try {
+        int[] counts = executeBatch(jdbc, UPSERT_SQL, batch, PersonDaoBean::setUpsertValues);
+        for (int count : counts) {
+          ret.add(count == 1);
+        }
+      } catch (DataAccessException e) {
+        String message = "Exception occurred while upserting batch of " + batch.size() + " records";
+        log.error(message, e);
+        ret.addAll(Collections.nCopies(batch.size(), false));
+      }
+      log.info("Upserted batch of " + batch.size() + " rows in " + (System.currentTimeMillis() - start) + "ms");
+    }
+    return ret;
+  }
+
+  private static void setUpsertValues(PreparedStatement ps, Person person) throws SQLException {
+    ps.setString(1, person.getLastName());
+    ps.setString(2, person.getFirstName());
+    ps.setInt(3, person.getAge());
+    ps.setString(4, person.getEyeColor());
+    ps.setString(5, person.getGender());
+    ps.setString(6, person.getLastName());
+    ps.setString(7, person.getFirstName());
+    ps.setInt(8, person.getAge());
+    ps.setString(9, person.getEyeColor());
+    ps.setString(10, person.getGender());
+  }
+
+  @Override
+  public BulkResult updateAll(Collection<Person> people) {
+    for (Person person : people) {
+      if (person.getId() == null) {
+        throw new IllegalArgumentException("Cannot update a Person without an ID: " + person);
+      }
+    }
+    return executeInBatches(UPDATE_SQL, new ArrayList<>(people), Person::getId, (ps, person) -> {
+      ps.setString(1, person.getLastName());
+      ps.setString(2, person.getFirstName());
+      ps.setInt(3, person.getAge());
+      ps.setString(4, person.getEyeColor());
+      ps.setString(5, person.getGender());
+      ps.setLong(6, person.getId());
+    });
+  }
+
+  @Override
+  public BulkResult deleteAllById(Collection<Long> ids) {
+    List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+    // Same as findAllById(): a null ID matches no row, so there is nothing to delete or report
+    distinctIds.remove(null);
+    return executeInBatches(DELETE_SQL, distinctIds, id -> id, (ps, id) -> ps.setLong(1, id));
+  }
+
+  /**
+   * Runs the specified single-row statement once per item, batchSize items
+   * at a time, each batch in its own transaction. The per-statement row
+   * counts from the batch tell which IDs were found.
+   */
+  private <T> BulkResult executeInBatches(String sql, List<T> items, Function<T, Long> idOf,
+      ParameterizedPreparedStatementSetter<T> setter) {
+    BulkResult ret = new BulkResult();
+    JdbcTemplate jdbc = getJdbcTemplate();
+    for (int from = 0; from < items.size(); from += batchSize) {
+      List<T> batch = items.subList(from, Math.min(from + batchSize, items.size()));
+      long start = System.currentTimeMillis();
+      try {
+        int[] counts = executeBatch(jdbc, sql, batch, setter);
+        for (int aa = 0; aa < batch.size(); aa++) {
+          ret.put(idOf.apply(batch.get(aa)), counts[aa] > 0 ? BulkResult.Outcome.SUCCEEDED
+              : BulkResult.Outcome.NOT_FOUND);
+        }
+      } catch (DataAccessException e) {
+        String message = "Exception occurred while writing batch of " + batch.size() + " records";
+        log.error(message, e);
+        for (T item : batch) {
+          ret.put(idOf.apply(item), BulkResult.Outcome.FAILED);
+        }
+      }
+      log.info("Wrote batch of " + batch.size() + " rows in " + (System.currentTimeMillis() - start) + "ms");
+    }
+    return ret;
+  }
+
+  /**
+   * Runs the specified statement once per item as a single JDBC batch,
+   * in its own transaction.
+   * 
+   * @return int[] - the row count for each item, in batch order.
+   */
+  private static <T> int[] executeBatch(JdbcTemplate jdbc, String sql, List<T> batch,
+      ParameterizedPreparedStatementSetter<T> setter) {
+    return jdbc.execute((ConnectionCallback<int[]>) con -> {
+      boolean autoCommit = con.getAutoCommit();
+      con.setAutoCommit(false);
+      try (PreparedStatement ps = con.prepareStatement(sql)) {
+        for (T item : batch) {
+          setter.setValues(ps, item);
+          ps.addBatch();
+        }
+        int[] rowCounts = ps.executeBatch();
+        con.commit();
+        return rowCounts;
+      } catch (SQLException e) {
+        con.rollback();
+        throw e;
+      } finally {
+        con.setAutoCommit(autoCommit);
+      }
+    });
+  }
+
+  /**
+   * Returns a copy of the specified Person with the specified ID,
+   * leaving the caller's object alone.
+   */
+  private static Person copyOf(Person person, long id) {
+    return new Person(person.getLastName(), person.getFirstName(), person.getAge(), person.getEyeColor(),
+        person.getGender()).withId(id);
+  }
+
+  /**
+   * Spliterator over an open ResultSet of Person rows. Releases the
+   * ResultSet, statement and Connection as soon as the rows run out or
+   * the Stream is closed, whichever comes first.
+   */
+  private class PersonSpliterator extends Spliterators.AbstractSpliterator<Person> {
+
+    private final JdbcTemplate jdbc;
+    private final Connection con;
+    private final PreparedStatement ps;
+    private final ResultSet rs;
+    private int rowNum;
+    private boolean closed;
+
+    PersonSpliterator(JdbcTemplate jdbc, Connection con, PreparedStatement ps, ResultSet rs) {
+      super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+      this.jdbc = jdbc;
+      this.con = con;
+      this.ps = ps;
+      this.rs = rs;
+    }
 
     @Override
-    public Person mapRow(ResultSet rs, int rowNum) throws SQLException {
-      long id = rs.getLong("id");
-      int age = rs.getInt("age");
-      String eyeColor = rs.getString("eye_color");
-      String gender = rs.getString("gender");
-      String lastName = rs.getString("last_name");
-      String firstName = rs.getString("first_name");
-      Person ret = new Person(lastName, firstName, age, eyeColor, gender).withId(id);
+    public boolean tryAdvance(Consumer<? super Person> action) {
+      boolean ret = false;
+      if (!closed) {
+        try {
+          if (rs.next()) {
+            action.accept(PersonRowMapper.INSTANCE.mapRow(rs, rowNum++));
+            ret = true;
+          } else {
+            close();
+          }
+        } catch (SQLException e) {
+          close();
+          throw jdbc.getExceptionTranslator().translate("streamAll", FIND_ALL_SQL, e);
+        }
+      }
       return ret;
     }
 
+    void close() {
+      if (!closed) {
+        closed = true;
+        JdbcUtils.closeResultSet(rs);
+        JdbcUtils.closeStatement(ps);
+        DataSourceUtils.releaseConnection(con, jdbc.getDataSource());
+      }
+    }
+
   }
 
 }
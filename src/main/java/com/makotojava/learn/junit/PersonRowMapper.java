@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.makotojava.learn.junit;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Maps a row of the Person table to a Person object. Stateless, so
+ * everybody shares INSTANCE.
+ * 
+ * Columns are read by position rather than by name, so the query MUST
+ * select exactly COLUMNS, in that order (e.g. "SELECT " + COLUMNS + " FROM ...").
+ * 
+ * @author J Steven Perry
+ *
+ */
+public final class PersonRowMapper implements RowMapper<Person> {
+
+  /**
+   * The projection this mapper expects, in column order.
+   */
+  public static final String COLUMNS = "id, when_created, last_name, first_name, age, eye_color, gender";
+
+  public static final PersonRowMapper INSTANCE = new PersonRowMapper();
+
+  private static final int ID = 1;
+  private static final int WHEN_CREATED = 2;
+  private static final int LAST_NAME = 3;
+  private static final int FIRST_NAME = 4;
+  private static final int AGE = 5;
+  private static final int EYE_COLOR = 6;
+  private static final int GENDER = 7;
+
+  private PersonRowMapper() {
+    // Use INSTANCE
+  }
+
+  @Override
+  public Person mapRow(ResultSet rs, int rowNum) throws SQLException {
+    return new Person(rs.getString(LAST_NAME), rs.getString(FIRST_NAME), rs.getInt(AGE), rs.getString(EYE_COLOR),
+        rs.getString(GENDER))
+            .withId(rs.getLong(ID))
+            .setWhenCreated(rs.getDate(WHEN_CREATED));
+  }
+
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.makotojava.learn.junit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only, in-memory, column-oriented copy of a Person population for
+ * analytics scans (counts, age histograms, etc.).
+ * 
+ * Each attribute lives in its own primitive array, indexed by row: ids
+ * and creation times in long[]s, ages in an int[], and eye color and
+ * gender as byte codes
+ * into small dictionaries. Names are int codes into dictionaries shared
+ * by every row, so each distinct name is stored once. Scans are plain
+ * loops over those arrays: no boxing, no pointer chasing, and no
+ * allocation apart from the (tiny) result.
+ * 
+ * Build one with load() or a Builder. A PersonStore shares nothing with
+ * the Builder that built it, so adding more rows to the Builder afterwards
+ * does not change it.
+ * 
+ * @author J Steven Perry
+ *
+ */
+public final class PersonStore {
+
+  /**
+   * Stored in place of a null whenCreated.
+   */
+  private static final long NO_TIME = Long.MIN_VALUE;
+
+  private final int size;
+  private final long[] ids;
+  private final long[] whenCreated;
+  private final int[] ages;
+  private final byte[] eyeColors;
+  private final byte[] genders;
+  private final int[] lastNames;
+  private final int[] firstNames;
+  private final Dictionary eyeColorDictionary;
+  private final Dictionary genderDictionary;
+  private final Dictionary lastNameDictionary;
+  private final Dictionary firstNameDictionary;
+
+  private PersonStore(Builder builder) {
+    size = builder.size;
+    ids = Arrays.copyOf(builder.ids, size);
+    whenCreated = Arrays.copyOf(builder.whenCreated, size);
+    ages = Arrays.copyOf(builder.ages, size);
+    eyeColors = Arrays.copyOf(builder.eyeColors, size);
+    genders = Arrays.copyOf(builder.genders, size);
+    lastNames = Arrays.copyOf(builder.lastNames, size);
+    firstNames = Arrays.copyOf(builder.firstNames, size);
+    // Copied, or the Builder could add values to a published store
+    eyeColorDictionary = new Dictionary(builder.eyeColorDictionary);
+    genderDictionary = new Dictionary(builder.genderDictionary);
+    lastNameDictionary = new Dictionary(builder.lastNameDictionary);
+    firstNameDictionary = new Dictionary(builder.firstNameDictionary);
+  }
+
+  /**
+   * Loads every Person object from the specified PersonDao, one row at
+   * a time (see PersonDao.forEach()).
+   */
+  public static PersonStore load(PersonDao personDao) {
+    Builder builder = new Builder();
+    personDao.forEach(builder::add);
+    return builder.build();
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long getId(int row) {
+    return ids[row];
+  }
+
+  /**
+   * @return Date - when the Person at the specified row was created, or
+   *         null if that is not known.
+   */
+  public Date getWhenCreated(int row) {
+    long time = whenCreated[row];
+    return time == NO_TIME ? null : new Date(time);
+  }
+
+  public int getAge(int row) {
+    return ages[row];
+  }
+
+  public String getEyeColor(int row) {
+    return eyeColorDictionary.decode(eyeColors[row] & 0xFF);
+  }
+
+  public String getGender(int row) {
+    return genderDictionary.decode(genders[row] & 0xFF);
+  }
+
+  public String getLastName(int row) {
+    return lastNameDictionary.decode(lastNames[row]);
+  }
+
+  public String getFirstName(int row) {
+    return firstNameDictionary.decode(firstNames[row]);
+  }
+
+  /**
+   * Rebuilds the Person object at the specified row.
+   */
+  public Person getPerson(int row) {
+    return new Person(getLastName(row), getFirstName(row), getAge(row), getEyeColor(row), getGender(row))
+        .withId(getId(row)).setWhenCreated(getWhenCreated(row));
+  }
+
+  /**
+   * @return int - the number of rows that match the specified Filter.
+   */
+  public int count(Filter filter) {
+    int ret = 0;
+    Scan scan = new Scan(filter);
+    if (scan.canMatch) {
+      for (int row = 0; row < size; row++) {
+        ret += scan.matches(row) ? 1 : 0;
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * @return int[] - the number of rows that match the specified Filter for
+   *         each age, indexed by age. The array is one longer than the
+   *         oldest age in the store. Ages are never negative (the Builder
+   *         rejects them).
+   */
+  public int[] ageHistogram(Filter filter) {
+    int maxAge = 0;
+    for (int row = 0; row < size; row++) {
+      maxAge = Math.max(maxAge, ages[row]);
+    }
+    int[] ret = new int[maxAge + 1];
+    Scan scan = new Scan(filter);
+    if (scan.canMatch) {
+      for (int row = 0; row < size; row++) {
+        if (scan.matches(row)) {
+          ret[ages[row]]++;
+        }
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * @return Map<String, Integer> - the number of rows that match the
+   *         specified Filter for each eye color in the store.
+   */
+  public Map<String, Integer> countByEyeColor(Filter filter) {
+    return countByCode(filter, eyeColors, eyeColorDictionary);
+  }
+
+  /**
+   * @return Map<String, Integer> - the number of rows that match the
+   *         specified Filter for each gender in the store.
+   */
+  public Map<String, Integer> countByGender(Filter filter) {
+    return countByCode(filter, genders, genderDictionary);
+  }
+
+  private Map<String, Integer> countByCode(Filter filter, byte[] codes, Dictionary dictionary) {
+    int[] counts = new int[dictionary.size()];
+    Scan scan = new Scan(filter);
+    if (scan.canMatch) {
+      for (int row = 0; row < size; row++) {
+        if (scan.matches(row)) {
+          counts[codes[row] & 0xFF]++;
+        }
+      }
+    }
+    Map<String, Integer> ret = new LinkedHashMap<>();
+    for (int code = 0; code < counts.length; code++) {
+      ret.put(dictionary.decode(code), counts[code]);
+    }
+    return ret;
+  }
+
+  /**
+   * A Filter resolved against this store's dictionaries, so matching a
+   * row only compares primitives.
+   */
+  private final class Scan {
+
+    private final int minAge;
+    private final int maxAge;
+    private final int eyeColorCode;
+    private final int genderCode;
+    private final boolean canMatch;
+
+    Scan(Filter filter) {
+      minAge = filter.minAge;
+      maxAge = filter.maxAge;
+      eyeColorCode = filter.eyeColor == null ? Dictionary.ANY : eyeColorDictionary.codeOf(filter.eyeColor);
+      genderCode = filter.gender == null ? Dictionary.ANY : genderDictionary.codeOf(filter.gender);
+      // A value that is not in the dictionary cannot match any row
+      canMatch = eyeColorCode != Dictionary.NOT_FOUND && genderCode != Dictionary.NOT_FOUND;
+    }
+
+    boolean matches(int row) {
+      int age = ages[row];
+      return age >= minAge & age <= maxAge
+          & (eyeColorCode == Dictionary.ANY | (eyeColors[row] & 0xFF) == eyeColorCode)
+          & (genderCode == Dictionary.ANY | (genders[row] & 0xFF) == genderCode);
+    }
+
+  }
+
+  /**
+   * Immutable set of criteria for scanning a PersonStore. Start with ALL
+   * and narrow it down, e.g. Filter.ALL.ageBetween(30, 40).eyeColor(EyeColor.BLUE).
+   */
+  public static final class Filter {
+
+    /**
+     * Matches every row.
+     */
+    public static final Filter ALL = new Filter(Integer.MIN_VALUE, Integer.MAX_VALUE, null, null);
+
+    private final int minAge;
+    private final int maxAge;
+    private final String eyeColor;
+    private final String gender;
+
+    private Filter(int minAge, int maxAge, String eyeColor, String gender) {
+      this.minAge = minAge;
+      this.maxAge = maxAge;
+      this.eyeColor = eyeColor;
+      this.gender = gender;
+    }
+
+    /**
+     * @return Filter - this Filter, also matching only ages between minAge
+     *         and maxAge (both inclusive).
+     */
+    public Filter ageBetween(int minAge, int maxAge) {
+      return new Filter(minAge, maxAge, eyeColor, gender);
+    }
+
+    public Filter eyeColor(EyeColor eyeColor) {
+      return eyeColor(eyeColor.name());
+    }
+
+    public Filter eyeColor(String eyeColor) {
+      return new Filter(minAge, maxAge, eyeColor, gender);
+    }
+
+    public Filter gender(Gender gender) {
+      return gender(gender.name());
+    }
+
+    public Filter gender(String gender) {
+      return new Filter(minAge, maxAge, eyeColor, gender);
+    }
+
+  }
+
+  /**
+   * Accumulates rows for a PersonStore. Not thread-safe.
+   */
+  public static final class Builder {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int size;
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] whenCreated = new long[INITIAL_CAPACITY];
+    private int[] ages = new int[INITIAL_CAPACITY];
+    private byte[] eyeColors = new byte[INITIAL_CAPACITY];
+    private byte[] genders = new byte[INITIAL_CAPACITY];
+    private int[] lastNames = new int[INITIAL_CAPACITY];
+    private int[] firstNames = new int[INITIAL_CAPACITY];
+    private final Dictionary eyeColorDictionary = new Dictionary(Dictionary.MAX_BYTE_CODES);
+    private final Dictionary genderDictionary = new Dictionary(Dictionary.MAX_BYTE_CODES);
+    private final Dictionary lastNameDictionary = new Dictionary(Integer.MAX_VALUE);
+    private final Dictionary firstNameDictionary = new Dictionary(Integer.MAX_VALUE);
+
+    /**
+     * Adds a row for the specified Person.
+     * 
+     * @throws IllegalArgumentException
+     *           If the Person's age is negative.
+     */
+    public Builder add(Person person) {
+      if (person.getAge() < 0) {
+        throw new IllegalArgumentException("Age cannot be negative: " + person);
+      }
+      if (size == ids.length) {
+        int capacity = size * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        whenCreated = Arrays.copyOf(whenCreated, capacity);
+        ages = Arrays.copyOf(ages, capacity);
+        eyeColors = Arrays.copyOf(eyeColors, capacity);
+        genders = Arrays.copyOf(genders, capacity);
+        lastNames = Arrays.copyOf(lastNames, capacity);
+        firstNames = Arrays.copyOf(firstNames, capacity);
+      }
+      ids[size] = person.getId() == null ? 0L : person.getId();
+      whenCreated[size] = person.getWhenCreated() == null ? NO_TIME : person.getWhenCreated().getTime();
+      ages[size] = person.getAge();
+      eyeColors[size] = (byte) eyeColorDictionary.encode(person.getEyeColor());
+      genders[size] = (byte) genderDictionary.encode(person.getGender());
+      lastNames[size] = lastNameDictionary.encode(person.getLastName());
+      firstNames[size] = firstNameDictionary.encode(person.getFirstName());
+      size++;
+      return this;
+    }
+
+    public PersonStore build() {
+      return new PersonStore(this);
+    }
+
+  }
+
+  /**
+   * Assigns each distinct String a small int code, in order of first
+   * appearance.
+   */
+  private static final class Dictionary {
+
+    static final int MAX_BYTE_CODES = 256;
+    static final int ANY = -1;
+    static final int NOT_FOUND = -2;
+
+    private final int maxSize;
+    private final List<String> values = new ArrayList<>();
+    private final Map<String, Integer> codes = new HashMap<>();
+
+    Dictionary(int maxSize) {
+      this.maxSize = maxSize;
+    }
+
+    Dictionary(Dictionary other) {
+      this(other.maxSize);
+      values.addAll(other.values);
+      codes.putAll(other.codes);
+    }
+
+    int encode(String value) {
+      Integer ret = codes.get(value);
+      if (ret == null) {
+        if (values.size() == maxSize) {
+          throw new IllegalStateException("More than " + maxSize + " distinct values, cannot add " + value);
+        }
+        ret = values.size();
+        values.add(value);
+        codes.put(value, ret);
+      }
+      return ret;
+    }
+
+    int codeOf(String value) {
+      Integer ret = codes.get(value);
+      return ret == null ? NOT_FOUND : ret;
+    }
+
+    String decode(int code) {
+      return values.get(code);
+    }
+
+    int size() {
+      return values.size();
+    }
+
+  }
+
+}
@@ -0,0 +1,468 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.makotojava.learn.junit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Write-behind buffer in front of a PersonDao. Adds, updates and deletes
+ * are held in memory and written in batches by flush(), which runs when
+ * the buffer fills up, every flushInterval, and on close(). Each batch is
+ * written by addAll(), updateAll() or deleteAllById(), so a burst of
+ * writes costs a handful of commits instead of one per row.
+ *
+ * Writes reach the DB in the order they were made. Each run of writes of
+ * the same kind (e.g. three adds, then two deletes, then an add) is one
+ * batch, and the batches are written in order, so a delete() or update()
+ * that frees up a name is written before a later add() that takes it.
+ *
+ * Every write returns a CompletableFuture that completes when its batch
+ * has been written, with the same result the PersonDao method would have
+ * returned: add() with the added Person (and its ID), update() with true
+ * or false, delete() with the Person or null if it was not found. If a
+ * batch fails, the futures of its writes complete exceptionally; later
+ * batches are still written.
+ *
+ * Writes to the same ID are coalesced when nothing else has been queued
+ * since the pending one: only the last update() is sent, and a delete()
+ * replaces a pending update(), whose future then completes with false
+ * because it is never written. If an add() has been queued in between,
+ * the pending write stays where it is and the new one is queued after the
+ * add(), since moving it could write e.g. a rename after the add() that
+ * takes the old name. An update() after a pending delete() returns false
+ * straight away, because the row is going away.
+ *
+ * Memory is bounded: once maxBuffered writes are waiting, the caller that
+ * fills the buffer does the flush itself, which slows writers down to the
+ * speed of the DB.
+ *
+ * @author J Steven Perry
+ *
+ */
+public class PersonWriteBehindBuffer implements AutoCloseable {
+
+  private static final Logger log = Logger.getLogger(PersonWriteBehindBuffer.class);
+
+  /**
+   * The default number of writes held before the buffer is flushed.
+   */
+  public static final int DEFAULT_MAX_BUFFERED = 5000;
+
+  /**
+   * The default time between background flushes, in milliseconds.
+   */
+  public static final long DEFAULT_FLUSH_INTERVAL_MS = 1000;
+
+  private final PersonDao delegate;
+
+  private final int maxBuffered;
+
+  private final ScheduledExecutorService scheduler;
+
+  /**
+   * Guards pending. Never held while writing to the DB.
+   */
+  private final ReentrantLock bufferLock = new ReentrantLock();
+
+  /**
+   * Held for the whole of a flush, so batches reach the DB in order.
+   */
+  private final ReentrantLock flushLock = new ReentrantLock();
+
+  private Pending pending = new Pending();
+
+  /**
+   * Guarded by bufferLock, so no write can slip in behind the last flush.
+   */
+  private boolean closed;
+
+  private final LongAdder flushCount = new LongAdder();
+  private final LongAdder failedCount = new LongAdder();
+
+  public PersonWriteBehindBuffer(PersonDao delegate) {
+    this(delegate, DEFAULT_MAX_BUFFERED, DEFAULT_FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param delegate
+   *          The PersonDao the writes are flushed to.
+   * @param maxBuffered
+   *          How many writes can wait in the buffer before it is flushed.
+   * @param flushInterval
+   *          How often the buffer is flushed in the background.
+   * @param flushIntervalUnit
+   *          The unit of flushInterval.
+   */
+  public PersonWriteBehindBuffer(PersonDao delegate, int maxBuffered, long flushInterval,
+      TimeUnit flushIntervalUnit) {
+    if (maxBuffered < 1) {
+      throw new IllegalArgumentException("Max buffered must be at least 1, was " + maxBuffered);
+    }
+    if (flushInterval < 1) {
+      throw new IllegalArgumentException("Flush interval must be at least 1, was " + flushInterval);
+    }
+    this.delegate = delegate;
+    this.maxBuffered = maxBuffered;
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread ret = new Thread(runnable, "PersonWriteBehindBuffer-flusher");
+      ret.setDaemon(true);
+      return ret;
+    });
+    scheduler.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval, flushIntervalUnit);
+  }
+
+  public PersonDao getDelegate() {
+    return delegate;
+  }
+
+  /**
+   * @return int - the number of writes waiting to be flushed.
+   */
+  public int size() {
+    bufferLock.lock();
+    try {
+      return pending.size;
+    } finally {
+      bufferLock.unlock();
+    }
+  }
+
+  /**
+   * @return long - the number of flushes that wrote something.
+   */
+  public long getFlushCount() {
+    return flushCount.sum();
+  }
+
+  /**
+   * @return long - the number of writes whose batch failed.
+   */
+  public long getFailedCount() {
+    return failedCount.sum();
+  }
+
+  public CompletableFuture<Person> add(Person person) {
+    return enqueue(buffer -> {
+      CompletableFuture<Person> ret = new CompletableFuture<>();
+      Run run = buffer.run(Kind.ADD);
+      run.adds.add(person);
+      run.addFutures.add(ret);
+      buffer.size++;
+      return ret;
+    });
+  }
+
+  public CompletableFuture<Boolean> update(Person person) {
+    Long id = checkId(person);
+    return enqueue(buffer -> {
+      CompletableFuture<Boolean> ret = new CompletableFuture<>();
+      Write write = buffer.writes.get(id);
+      if (write != null && write.delete) {
+        ret.complete(false);
+        return ret;
+      }
+      Write next = buffer.replace(write, id, person, false);
+      next.updateFutures.add(ret);
+      return ret;
+    });
+  }
+
+  public CompletableFuture<Person> delete(Person person) {
+    Long id = checkId(person);
+    return enqueue(buffer -> {
+      CompletableFuture<Person> ret = new CompletableFuture<>();
+      Write write = buffer.writes.get(id);
+      if (write == null || !write.delete) {
+        // Deleting again changes nothing, so a pending delete stays where it is
+        write = buffer.replace(write, id, person, true);
+      }
+      write.deleteFutures.add(ret);
+      return ret;
+    });
+  }
+
+  /**
+   * Writes everything in the buffer to the DB and completes the futures
+   * of the writes. Returns once that is done.
+   */
+  public void flush() {
+    flushLock.lock();
+    try {
+      Pending batch;
+      bufferLock.lock();
+      try {
+        batch = pending;
+        pending = new Pending();
+      } finally {
+        bufferLock.unlock();
+      }
+      if (batch.size > 0) {
+        write(batch);
+      }
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /**
+   * Stops the background flushes, flushes what is left and refuses any
+   * further writes.
+   */
+  @Override
+  public void close() {
+    bufferLock.lock();
+    try {
+      closed = true;
+    } finally {
+      bufferLock.unlock();
+    }
+    scheduler.shutdown();
+    flush();
+  }
+
+  private <T> CompletableFuture<T> enqueue(Function<Pending, CompletableFuture<T>> write) {
+    CompletableFuture<T> ret;
+    boolean full;
+    bufferLock.lock();
+    try {
+      if (closed) {
+        throw new IllegalStateException("Write-behind buffer is closed");
+      }
+      ret = write.apply(pending);
+      full = pending.size >= maxBuffered;
+    } finally {
+      bufferLock.unlock();
+    }
+    if (full) {
+      flush();
+    }
+    return ret;
+  }
+
+  private static Long checkId(Person person) {
+    if (person.getId() == null) {
+      throw new IllegalArgumentException("Person must have an ID: " + person);
+    }
+    return person.getId();
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      // Keep the scheduler alive; the futures have already been failed
+      log.error("Exception occurred during background flush", e);
+    }
+  }
+
+  private void write(Pending batch) {
+    long start = System.currentTimeMillis();
+    int[] counts = new int[Kind.values().length];
+    for (Run run : batch.runs) {
+      if (run.kind == Kind.ADD) {
+        writeAdds(run);
+        counts[Kind.ADD.ordinal()] += run.adds.size();
+        continue;
+      }
+      List<Write> writes = new ArrayList<>(run.writes.size());
+      for (Write write : run.writes) {
+        if (!write.replaced) {
+          writes.add(write);
+        }
+      }
+      if (writes.isEmpty()) {
+        continue;
+      }
+      counts[run.kind.ordinal()] += writes.size();
+      List<Long> ids = new ArrayList<>(writes.size());
+      List<Person> people = new ArrayList<>(writes.size());
+      for (Write write : writes) {
+        ids.add(write.id);
+        people.add(write.person);
+      }
+      writeById(writes, (run.kind == Kind.UPDATE) ? () -> delegate.updateAll(people)
+          : () -> delegate.deleteAllById(ids));
+    }
+    flushCount.increment();
+    log.info("Flushed " + counts[Kind.ADD.ordinal()] + " adds, " + counts[Kind.UPDATE.ordinal()] + " updates and "
+        + counts[Kind.DELETE.ordinal()] + " deletes in " + batch.runs.size() + " batches in "
+        + (System.currentTimeMillis() - start) + "ms");
+  }
+
+  private void writeAdds(Run run) {
+    List<Person> added;
+    try {
+      added = delegate.addAll(run.adds);
+    } catch (RuntimeException e) {
+      run.addFutures.forEach(future -> fail(future, e));
+      return;
+    }
+    for (int aa = 0; aa < run.addFutures.size(); aa++) {
+      Person person = added.get(aa);
+      if (person != null) {
+        run.addFutures.get(aa).complete(person);
+      } else {
+        fail(run.addFutures.get(aa), new IllegalStateException("Batch containing add failed (see log)"));
+      }
+    }
+  }
+
+  /**
+   * Runs updateAll() or deleteAllById() for the specified writes and
+   * completes the futures waiting on each of them from its outcome.
+   */
+  private void writeById(List<Write> writes, Supplier<BulkResult> call) {
+    BulkResult result = null;
+    RuntimeException exception = null;
+    try {
+      result = call.get();
+    } catch (RuntimeException e) {
+      exception = e;
+    }
+    for (Write write : writes) {
+      if (write.delete) {
+        // Updates the delete replaced, which were never written
+        write.updateFutures.forEach(future -> future.complete(false));
+      }
+      BulkResult.Outcome outcome = (result == null) ? BulkResult.Outcome.FAILED : result.getOutcome(write.id);
+      if (outcome == BulkResult.Outcome.FAILED) {
+        RuntimeException cause = (exception != null) ? exception
+            : new IllegalStateException("Batch containing ID " + write.id + " failed (see log)");
+        write.updateFutures.forEach(future -> fail(future, cause));
+        write.deleteFutures.forEach(future -> fail(future, cause));
+      } else {
+        boolean found = outcome == BulkResult.Outcome.SUCCEEDED;
+        write.updateFutures.forEach(future -> future.complete(found));
+        write.deleteFutures.forEach(future -> future.complete(found ? write.person : null));
+      }
+    }
+  }
+
+  private void fail(CompletableFuture<?> future, Throwable cause) {
+    if (future.completeExceptionally(cause)) {
+      failedCount.increment();
+    }
+  }
+
+  private enum Kind {
+    ADD,
+    UPDATE,
+    DELETE
+  }
+
+  /**
+   * The update or delete waiting for one ID, and everyone waiting on it.
+   */
+  private static class Write {
+    /**
+     * The run the write is in.
+     */
+    private Run run;
+    private final Long id;
+    private final Person person;
+    private final boolean delete;
+    /**
+     * Set when a later write to the same ID takes this one's place.
+     */
+    private boolean replaced;
+    private final List<CompletableFuture<Boolean>> updateFutures = new ArrayList<>(1);
+    private final List<CompletableFuture<Person>> deleteFutures = new ArrayList<>(1);
+
+    Write(Long id, Person person, boolean delete) {
+      this.id = id;
+      this.person = person;
+      this.delete = delete;
+    }
+  }
+
+  /**
+   * A run of writes of the same kind, written as one batch.
+   */
+  private static class Run {
+    private final Kind kind;
+    private final List<Person> adds = new ArrayList<>();
+    private final List<CompletableFuture<Person>> addFutures = new ArrayList<>();
+    private final List<Write> writes = new ArrayList<>();
+
+    Run(Kind kind) {
+      this.kind = kind;
+    }
+  }
+
+  /**
+   * The writes waiting for the next flush, in the order they were made.
+   */
+  private static class Pending {
+    private final List<Run> runs = new ArrayList<>();
+    /**
+     * The latest update or delete for each ID.
+     */
+    private final Map<Long, Write> writes = new HashMap<>();
+    /**
+     * The number of writes waiting, not counting replaced ones.
+     */
+    private int size;
+
+    /**
+     * Returns the last run if it is of the specified kind, otherwise starts
+     * a new one.
+     */
+    Run run(Kind kind) {
+      Run ret = runs.isEmpty() ? null : runs.get(runs.size() - 1);
+      if (ret == null || ret.kind != kind) {
+        ret = new Run(kind);
+        runs.add(ret);
+      }
+      return ret;
+    }
+
+    /**
+     * Adds an update or delete for the specified ID at the end. If the
+     * pending one (if any) is in the last run, nothing has been queued
+     * since, so the new write takes its place and its waiting updates.
+     * Otherwise the pending one is left where it is, to be written first.
+     */
+    Write replace(Write pending, Long id, Person person, boolean delete) {
+      Write ret = new Write(id, person, delete);
+      if (pending != null && pending.run == runs.get(runs.size() - 1)) {
+        pending.replaced = true;
+        ret.updateFutures.addAll(pending.updateFutures);
+        size--;
+      }
+      ret.run = run(delete ? Kind.DELETE : Kind.UPDATE);
+      ret.run.writes.add(ret);
+      writes.put(id, ret);
+      size++;
+      return ret;
+    }
+  }
+
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.makotojava.learn.junit;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.sql.DataSource;
+
+import org.apache.log4j.Logger;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Opt-in DataSource decorator that caches PreparedStatements per physical
+ * Connection, keyed by SQL, so repeated queries skip the prepare step.
+ *
+ * The cache belongs to the physical Connection the target DataSource hands
+ * out (found with unwrap(Connection.class)), not to one checkout of it. So
+ * when the target is a pool such as HikariCP, a Connection returned to the
+ * pool keeps its statements open and the next caller to borrow it gets
+ * cache hits, even though JdbcTemplate borrows and returns a Connection on
+ * every call. Cached statements are prepared on the physical Connection,
+ * so the pool does not close them when the Connection goes back.
+ *
+ * Closing a cached PreparedStatement returns it to the cache instead of
+ * closing it. A cache is dropped once its physical Connection is closed
+ * (e.g. retired by the pool). With an unpooled target every checkout is a
+ * new physical Connection, so nothing is ever reused.
+ *
+ * Statement-level settings (fetch size, max rows, etc.) survive the trip
+ * through the cache; callers that change them should set them every time.
+ *
+ * @author J Steven Perry
+ *
+ */
+public class StatementCachingDataSource extends DelegatingDataSource {
+
+  private static final Logger log = Logger.getLogger(StatementCachingDataSource.class);
+
+  /**
+   * The default maximum number of PreparedStatements cached per Connection.
+   */
+  public static final int DEFAULT_CACHE_SIZE = 32;
+
+  private final int cacheSize;
+
+  /**
+   * One cache per physical Connection. Not a WeakHashMap, because every
+   * cached statement refers back to its Connection and would keep the key
+   * reachable; entries are swept out once their Connection is closed.
+   */
+  private final Map<Connection, StatementCache> caches = new IdentityHashMap<>();
+
+  private final ReentrantLock cachesLock = new ReentrantLock();
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  public StatementCachingDataSource(DataSource targetDataSource) {
+    this(targetDataSource, DEFAULT_CACHE_SIZE);
+  }
+
+  public StatementCachingDataSource(DataSource targetDataSource, int cacheSize) {
+    super(targetDataSource);
+    if (cacheSize < 1) {
+      throw new IllegalArgumentException("Cache size must be at least 1, was " + cacheSize);
+    }
+    this.cacheSize = cacheSize;
+  }
+
+  public int getCacheSize() {
+    return cacheSize;
+  }
+
+  /**
+   * Returns the number of prepareStatement() calls answered from a cache.
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * Returns the number of prepareStatement() calls that had to prepare a
+   * new statement.
+   */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return cachingConnection(getTargetDataSource().getConnection());
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return cachingConnection(getTargetDataSource().getConnection(username, password));
+  }
+
+  private Connection cachingConnection(Connection target) throws SQLException {
+    StatementCache cache;
+    try {
+      cache = cacheFor(target.unwrap(Connection.class));
+    } catch (SQLException | RuntimeException e) {
+      target.close();
+      throw e;
+    }
+    return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+        new CachingConnectionHandler(target, cache));
+  }
+
+  private StatementCache cacheFor(Connection physical) {
+    cachesLock.lock();
+    try {
+      StatementCache ret = caches.get(physical);
+      if (ret == null) {
+        // A new physical Connection, so older ones may have been closed since the last sweep
+        sweepClosed();
+        ret = new StatementCache(physical);
+        caches.put(physical, ret);
+      }
+      return ret;
+    } finally {
+      cachesLock.unlock();
+    }
+  }
+
+  private void sweepClosed() {
+    for (Iterator<Connection> iter = caches.keySet().iterator(); iter.hasNext();) {
+      Connection physical = iter.next();
+      boolean closed;
+      try {
+        closed = physical.isClosed();
+      } catch (SQLException e) {
+        closed = true;
+      }
+      if (closed) {
+        iter.remove();
+      }
+    }
+  }
+
+  /**
+   * Calls the specified method on the target, unwrapping any exception
+   * it throws so the caller sees the original.
+   */
+  private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getTargetException();
+    }
+  }
+
+  /**
+   * The statements cached for one physical Connection.
+   */
+  private class StatementCache {
+
+    private final Connection physical;
+
+    private final Map<String, CachedStatement> statements;
+
+    /**
+     * Guards the statements. A lock rather than synchronized, because it is
+     * held across JDBC calls and a virtual thread blocked inside a
+     * synchronized block pins its carrier thread.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    StatementCache(Connection physical) {
+      this.physical = physical;
+      // Access-ordered, so the eldest entry is the least recently used one
+      this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+          boolean ret = size() > cacheSize;
+          if (ret) {
+            eldest.getValue().evict();
+          }
+          return ret;
+        }
+      };
+    }
+
+    /**
+     * Returns the cached statement for the specified key, preparing it on
+     * the physical Connection if need be, or null if it is in use.
+     */
+    PreparedStatement prepareStatement(String key, Connection connection, Method method, Object[] args)
+        throws Throwable {
+      lock.lock();
+      try {
+        CachedStatement cachedStatement = statements.get(key);
+        if (cachedStatement != null && cachedStatement.target.isClosed()) {
+          statements.remove(key);
+          cachedStatement = null;
+        }
+        if (cachedStatement == null) {
+          misses.increment();
+          cachedStatement = new CachedStatement((PreparedStatement) invokeTarget(physical, method, args));
+          statements.put(key, cachedStatement);
+        } else if (cachedStatement.inUse) {
+          return null;
+        } else {
+          hits.increment();
+          cachedStatement.target.clearParameters();
+        }
+        cachedStatement.inUse = true;
+        cachedStatement.connection = connection;
+        return cachedStatement.proxy;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Called when a checkout of the physical Connection is closed. Statements
+     * the caller left open are closed, the way the pool would close them;
+     * the rest stay cached for the next checkout.
+     */
+    void release(Connection connection) {
+      List<CachedStatement> leaked = new ArrayList<>();
+      lock.lock();
+      try {
+        for (Iterator<CachedStatement> iter = statements.values().iterator(); iter.hasNext();) {
+          CachedStatement cachedStatement = iter.next();
+          if (cachedStatement.inUse && cachedStatement.connection == connection) {
+            iter.remove();
+            leaked.add(cachedStatement);
+          }
+        }
+      } finally {
+        lock.unlock();
+      }
+      for (CachedStatement cachedStatement : leaked) {
+        cachedStatement.closeQuietly();
+      }
+    }
+
+  }
+
+  /**
+   * Intercepts prepareStatement() and close() on one checkout of a
+   * Connection. Everything else goes straight to the target Connection.
+   */
+  private static class CachingConnectionHandler implements InvocationHandler {
+
+    private final Connection target;
+
+    private final StatementCache cache;
+
+    CachingConnectionHandler(Connection target, StatementCache cache) {
+      this.target = target;
+      this.cache = cache;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+      case "prepareStatement":
+        if (args.length == 1) {
+          return prepareStatement((String) args[0], (Connection) proxy, method, args);
+        } else if (args.length == 2 && args[1] instanceof Integer) {
+          // prepareStatement(sql, autoGeneratedKeys)
+          return prepareStatement(args[0] + "\u0000" + args[1], (Connection) proxy, method, args);
+        }
+        break;
+      case "close":
+        try {
+          cache.release((Connection) proxy);
+        } finally {
+          target.close();
+        }
+        return null;
+      case "equals":
+        return proxy == args[0];
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      default:
+        break;
+      }
+      return invokeTarget(target, method, args);
+    }
+
+    private Object prepareStatement(String key, Connection proxy, Method method, Object[] args) throws Throwable {
+      PreparedStatement ret = cache.prepareStatement(key, proxy, method, args);
+      if (ret == null) {
+        // Same SQL is already open on this Connection, so hand out one that is not cached
+        log.debug("Statement in use, preparing an uncached one: " + args[0]);
+        return invokeTarget(target, method, args);
+      }
+      return ret;
+    }
+
+  }
+
+  /**
+   * A PreparedStatement in the cache, along with the proxy handed out to
+   * callers. Closing the proxy returns the statement to the cache.
+   */
+  private static class CachedStatement implements InvocationHandler {
+
+    private final PreparedStatement target;
+
+    private final PreparedStatement proxy;
+
+    /**
+     * The checkout of the Connection the statement was last handed out on,
+     * returned by getConnection().
+     */
+    private Connection connection;
+
+    private boolean inUse;
+
+    private boolean evicted;
+
+    CachedStatement(PreparedStatement target) {
+      this.target = target;
+      this.proxy = (PreparedStatement) Proxy.newProxyInstance(CachedStatement.class.getClassLoader(),
+          new Class<?>[] { PreparedStatement.class }, this);
+    }
+
+    /**
+     * Called when the statement drops out of the cache. It is closed now
+     * if nobody is using it, otherwise when its user is finished with it.
+     */
+    void evict() {
+      evicted = true;
+      if (!inUse) {
+        closeQuietly();
+      }
+    }
+
+    private void closeQuietly() {
+      try {
+        target.close();
+      } catch (SQLException e) {
+        log.warn("Exception occurred while closing cached statement", e);
+      }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+      case "close":
+        inUse = false;
+        if (evicted) {
+          target.close();
+        }
+        return null;
+      case "getConnection":
+        return connection;
+      case "equals":
+        return proxy == args[0];
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      default:
+        return invokeTarget(target, method, args);
+      }
+    }
+
+  }
+
+}
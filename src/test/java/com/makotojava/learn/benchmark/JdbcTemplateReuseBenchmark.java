@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.benchmark;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import com.makotojava.learn.junit.Person;
+import com.makotojava.learn.junit.PersonDaoBean;
+import com.makotojava.learn.junit.StatementCachingDataSource;
+
+/**
+ * Compares findById() with a JdbcTemplate and SQL string built on every
+ * call (the way PersonDaoBean used to work) against the shared template,
+ * with and without StatementCachingDataSource.
+ * 
+ * All three run over a single reused Connection, the way a pooled
+ * DataSource would hand them out, so only the per-call overhead differs.
+ * The statement cache sits in front of it, the same way it would sit in
+ * front of a pool.
+ * 
+ * Run with: mvn test -P benchmark -Dbenchmark=JdbcTemplateReuseBenchmark
+ * 
+ * @author J Steven Perry
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JdbcTemplateReuseBenchmark {
+
+  @Param({ "false", "true" })
+  public boolean statementCache;
+
+  private EmbeddedDatabase embeddedDb;
+
+  private SingleConnectionDataSource dataSource;
+
+  private PersonDaoBean personDao;
+
+  private long id;
+
+  @Setup(Level.Trial)
+  public void setUp() throws SQLException {
+    embeddedDb = new EmbeddedDatabaseBuilder()
+        .generateUniqueName(true)
+        .setType(EmbeddedDatabaseType.DERBY)
+        .addScript("sql/create_tables.sql")
+        .addScript("sql/insert_data.sql")
+        .build();
+    dataSource = new SingleConnectionDataSource(embeddedDb.getConnection(), true);
+    personDao = new PersonDaoBean();
+    personDao.setDataSource(statementCache ? new StatementCachingDataSource(dataSource) : dataSource);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    dataSource.destroy();
+    embeddedDb.shutdown();
+  }
+
+  @Benchmark
+  public Person perCallTemplate() {
+    JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+    String sql = "SELECT * FROM " + Person.TABLE_NAME + " WHERE id = ?";
+    Object[] args = { nextId() };
+    List<Person> people = jdbc.query(sql, args, PER_CALL_ROW_MAPPER);
+    return people.isEmpty() ? null : people.get(0);
+  }
+
+  @Benchmark
+  public Person sharedTemplate() {
+    return personDao.findById(nextId());
+  }
+
+  private long nextId() {
+    // IDs 1-6 come from insert_data.sql
+    id = id % 6 + 1;
+    return id;
+  }
+
+  private static final RowMapper<Person> PER_CALL_ROW_MAPPER = (rs, rowNum) -> new Person(rs.getString("last_name"),
+      rs.getString("first_name"), rs.getInt("age"), rs.getString("eye_color"), rs.getString("gender"))
+          .withId(rs.getLong("id"));
+
+}
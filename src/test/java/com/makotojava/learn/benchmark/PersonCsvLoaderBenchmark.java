@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import com.makotojava.learn.junit.Person;
+import com.makotojava.learn.junit.PersonBulkGenerator;
+import com.makotojava.learn.junit.PersonCsvLoader;
+import com.makotojava.learn.junit.TestSpringConfigurationEmptyDb;
+
+/**
+ * Time to load a CSV file of generated Person rows into an empty table:
+ * PersonCsvLoader.load() (batched INSERTs) against
+ * PersonCsvLoader.importFile() (Derby's bulk import). One operation is
+ * one whole load.
+ *
+ * Run with: mvn test -P benchmark -Dbenchmark=PersonCsvLoaderBenchmark
+ *
+ * @author J Steven Perry
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PersonCsvLoaderBenchmark {
+
+  @Param({ "100000", "1000000" })
+  public int rows;
+
+  private Path csvFile;
+
+  private AnnotationConfigApplicationContext ctx;
+
+  private PersonCsvLoader loader;
+
+  @Setup(Level.Trial)
+  public void writeCsv() throws IOException {
+    csvFile = Files.createTempFile("people", ".csv");
+    try (BufferedWriter writer = Files.newBufferedWriter(csvFile, StandardCharsets.UTF_8)) {
+      Iterator<Person> people = new PersonBulkGenerator(42).stream(rows).iterator();
+      while (people.hasNext()) {
+        Person person = people.next();
+        writer.write(String.join(",", person.getLastName(), person.getFirstName(), String.valueOf(person.getAge()),
+            person.getEyeColor(), person.getGender()));
+        writer.newLine();
+      }
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteCsv() throws IOException {
+    Files.deleteIfExists(csvFile);
+  }
+
+  @Setup(Level.Invocation)
+  public void setUp() {
+    ctx = new AnnotationConfigApplicationContext(TestSpringConfigurationEmptyDb.class);
+    loader = new PersonCsvLoader((DataSource) ctx.getBean("dataSource"));
+  }
+
+  @TearDown(Level.Invocation)
+  public void tearDown() {
+    ctx.getBean(EmbeddedDatabase.class).shutdown();
+    ctx.close();
+  }
+
+  @Benchmark
+  public long load() throws IOException {
+    return loader.load(csvFile);
+  }
+
+  @Benchmark
+  public long importFile() throws IOException {
+    return loader.importFile(csvFile);
+  }
+
+}
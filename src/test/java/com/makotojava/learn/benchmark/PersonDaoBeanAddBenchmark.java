@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import com.makotojava.learn.junit.Person;
+import com.makotojava.learn.junit.PersonDaoBean;
+import com.makotojava.learn.junit.PersonGenerator;
+import com.makotojava.learn.junit.TestSpringConfigurationEmptyDb;
+
+/**
+ * Benchmark for PersonDaoBean.add(). Every row in the table shares
+ * the same last name, so insert latency should stay flat no matter
+ * how many rows there are per surname.
+ * 
+ * Run with: mvn test -P benchmark -Dbenchmark=PersonDaoBeanAddBenchmark
+ * 
+ * @author J Steven Perry
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PersonDaoBeanAddBenchmark {
+
+  private static final String LAST_NAME = "Wragdhen";
+
+  @Param({ "1", "1000", "10000" })
+  public int rowsPerSurname;
+
+  private AnnotationConfigApplicationContext ctx;
+
+  private PersonDaoBean personDao;
+
+  private int firstNameCounter;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    ctx = new AnnotationConfigApplicationContext(TestSpringConfigurationEmptyDb.class);
+    personDao = ctx.getBean(PersonDaoBean.class);
+    personDao.addAll(IntStream.range(0, rowsPerSurname).mapToObj(aa -> nextPerson()));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    ((EmbeddedDatabase) ctx.getBean("dataSource")).shutdown();
+    ctx.close();
+  }
+
+  @Benchmark
+  public Person add() {
+    return personDao.add(nextPerson());
+  }
+
+  private Person nextPerson() {
+    return new Person(LAST_NAME, "Zelx" + firstNameCounter++, 28, PersonGenerator.BLUE, PersonGenerator.MALE);
+  }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.benchmark;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import com.makotojava.learn.junit.Person;
+import com.makotojava.learn.junit.PersonBulkGenerator;
+import com.makotojava.learn.junit.PersonDaoBean;
+import com.makotojava.learn.junit.TestSpringConfigurationEmptyDb;
+
+/**
+ * Benchmarks the basic PersonDaoBean operations (findAll, findById,
+ * findAllByLastName, add, update and delete) against embedded Derby
+ * seeded by PersonBulkGenerator, at several table sizes. Every Person
+ * has a unique name, and last names repeat the way PersonNameEncoder
+ * spreads them.
+ *
+ * delete() can only delete a row once, so it runs in batches of
+ * DELETE_BATCH_SIZE against rows added before each iteration, and its
+ * score is the time for the whole batch.
+ *
+ * Run with: mvn test -P benchmark -Dbenchmark=PersonDaoBeanBenchmark
+ *
+ * The results are written as JSON to target/jmh-result.json.
+ *
+ * @author J Steven Perry
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PersonDaoBeanBenchmark {
+
+  private static final int DELETE_BATCH_SIZE = 500;
+
+  /**
+   * How many existing Person objects update() cycles through.
+   */
+  private static final int UPDATE_SAMPLE_SIZE = 1024;
+
+  @Param({ "1000", "100000", "1000000" })
+  public int rows;
+
+  private AnnotationConfigApplicationContext ctx;
+
+  private PersonDaoBean personDao;
+
+  private final PersonBulkGenerator generator = new PersonBulkGenerator(42);
+
+  private String[] lastNames;
+
+  private List<Person> updateSample;
+
+  private int updateIndex;
+
+  private long counter;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    ctx = new AnnotationConfigApplicationContext(TestSpringConfigurationEmptyDb.class);
+    personDao = ctx.getBean(PersonDaoBean.class);
+    generator.insert(new JdbcTemplate(ctx.getBean(EmbeddedDatabase.class)), rows);
+    counter = rows;
+    lastNames = IntStream.range(0, 64)
+        .mapToObj(aa -> generator.createPerson(randomId() - 1).getLastName())
+        .toArray(String[]::new);
+    List<Long> ids = new ArrayList<>(UPDATE_SAMPLE_SIZE);
+    for (int aa = 0; aa < UPDATE_SAMPLE_SIZE; aa++) {
+      ids.add(randomId());
+    }
+    updateSample = new ArrayList<>(personDao.findAllById(ids).values());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    ctx.getBean(EmbeddedDatabase.class).shutdown();
+    ctx.close();
+  }
+
+  @Benchmark
+  public List<Person> findAll() {
+    return personDao.findAll();
+  }
+
+  @Benchmark
+  public Person findById() {
+    return personDao.findById(randomId());
+  }
+
+  @Benchmark
+  public List<Person> findAllByLastName() {
+    return personDao.findAllByLastName(lastNames[ThreadLocalRandom.current().nextInt(lastNames.length)]);
+  }
+
+  @Benchmark
+  public Person add() {
+    return personDao.add(nextPerson());
+  }
+
+  @Benchmark
+  public boolean update() {
+    Person person = updateSample.get(updateIndex++ % updateSample.size());
+    return personDao.update(new Person(person.getLastName(), person.getFirstName(), person.getAge() % 50 + 1,
+        person.getEyeColor(), person.getGender()).withId(person.getId()));
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @Warmup(iterations = 3, batchSize = DELETE_BATCH_SIZE)
+  @Measurement(iterations = 5, batchSize = DELETE_BATCH_SIZE)
+  public Person delete(Deletable deletable) {
+    return personDao.delete(deletable.people.pop());
+  }
+
+  private long randomId() {
+    // IDs are contiguous from 1 after seeding
+    return ThreadLocalRandom.current().nextLong(rows) + 1;
+  }
+
+  private Person nextPerson() {
+    return generator.createPerson(counter++);
+  }
+
+  /**
+   * The rows delete() deletes, added before each iteration so the other
+   * benchmarks do not see them.
+   */
+  @State(Scope.Benchmark)
+  public static class Deletable {
+
+    private final Deque<Person> people = new ArrayDeque<>();
+
+    @Setup(Level.Iteration)
+    public void setUp(PersonDaoBeanBenchmark benchmark) {
+      people.clear();
+      people.addAll(benchmark.personDao
+          .addAll(IntStream.range(0, DELETE_BATCH_SIZE).mapToObj(aa -> benchmark.nextPerson())));
+    }
+
+  }
+
+}
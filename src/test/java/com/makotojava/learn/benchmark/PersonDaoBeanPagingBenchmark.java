@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import com.makotojava.learn.junit.Person;
+import com.makotojava.learn.junit.PersonDaoBean;
+import com.makotojava.learn.junit.PersonGenerator;
+import com.makotojava.learn.junit.TestSpringConfigurationEmptyDb;
+
+/**
+ * Compares reading page 1 and page 10,000 with PersonDaoBean.findPage()
+ * (keyset pagination) against the same pages read with OFFSET, which
+ * has to skip over every row on the earlier pages.
+ * 
+ * Run with: mvn test -P benchmark -Dbenchmark=PersonDaoBeanPagingBenchmark
+ * 
+ * @author J Steven Perry
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PersonDaoBeanPagingBenchmark {
+
+  private static final int PAGE_SIZE = 10;
+
+  private static final int PAGE_COUNT = 10000;
+
+  private static final String OFFSET_SQL =
+      "SELECT * FROM " + Person.TABLE_NAME + " ORDER BY id OFFSET ? ROWS FETCH FIRST ? ROWS ONLY";
+
+  @Param({ "1", "10000" })
+  public int page;
+
+  private AnnotationConfigApplicationContext ctx;
+
+  private PersonDaoBean personDao;
+
+  private JdbcTemplate jdbc;
+
+  private Long afterId;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    ctx = new AnnotationConfigApplicationContext(TestSpringConfigurationEmptyDb.class);
+    personDao = ctx.getBean(PersonDaoBean.class);
+    jdbc = new JdbcTemplate(ctx.getBean(EmbeddedDatabase.class));
+    personDao.addAll(IntStream.range(0, PAGE_SIZE * PAGE_COUNT)
+        .mapToObj(aa -> new Person("Last" + aa / 1000, "First" + aa, 28, PersonGenerator.BLUE, PersonGenerator.MALE)));
+    // IDs are contiguous from 1, so this is the last ID on the previous page
+    afterId = (long) (page - 1) * PAGE_SIZE;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    ctx.getBean(EmbeddedDatabase.class).shutdown();
+    ctx.close();
+  }
+
+  @Benchmark
+  public List<Person> keyset() {
+    return personDao.findPage(afterId, PAGE_SIZE);
+  }
+
+  @Benchmark
+  public List<Person> offset() {
+    Object[] args = { (page - 1) * PAGE_SIZE, PAGE_SIZE };
+    return jdbc.query(OFFSET_SQL, args, (rs, rowNum) -> new Person(rs.getString("last_name"),
+        rs.getString("first_name"), rs.getInt("age"), rs.getString("eye_color"), rs.getString("gender"))
+            .withId(rs.getLong("id")));
+  }
+
+}
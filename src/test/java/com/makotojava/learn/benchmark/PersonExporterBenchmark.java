@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import com.makotojava.learn.junit.Person;
+import com.makotojava.learn.junit.PersonBulkGenerator;
+import com.makotojava.learn.junit.PersonDaoBean;
+import com.makotojava.learn.junit.PersonExporter;
+import com.makotojava.learn.junit.TestSpringConfigurationEmptyDb;
+
+/**
+ * Time to export the whole Person table to a stream that throws the
+ * bytes away: findAll() and Person.toString() (the old way) against
+ * PersonExporter's CSV and JSON lines, which write straight from the
+ * cursor. Run with -prof gc to compare allocation too.
+ *
+ * Run with: mvn test -P benchmark -Dbenchmark=PersonExporterBenchmark
+ *
+ * @author J Steven Perry
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PersonExporterBenchmark {
+
+  private static final OutputStream NULL_OUTPUT = new OutputStream() {
+    @Override
+    public void write(int b) {
+      // Discard
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      // Discard
+    }
+  };
+
+  @Param({ "100000" })
+  public int rows;
+
+  private AnnotationConfigApplicationContext ctx;
+
+  private PersonDaoBean personDao;
+
+  private PersonExporter exporter;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    ctx = new AnnotationConfigApplicationContext(TestSpringConfigurationEmptyDb.class);
+    DataSource dataSource = (DataSource) ctx.getBean("dataSource");
+    new PersonBulkGenerator(42).insert(new JdbcTemplate(dataSource), rows);
+    personDao = ctx.getBean(PersonDaoBean.class);
+    exporter = new PersonExporter(dataSource);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    ctx.getBean(EmbeddedDatabase.class).shutdown();
+    ctx.close();
+  }
+
+  @Benchmark
+  public void findAllToString() throws IOException {
+    Writer writer = new OutputStreamWriter(NULL_OUTPUT, StandardCharsets.UTF_8);
+    for (Person person : personDao.findAll()) {
+      writer.write(person.toString());
+      writer.write('\n');
+    }
+    writer.flush();
+  }
+
+  @Benchmark
+  public long exportCsv() throws IOException {
+    return exporter.export(NULL_OUTPUT, PersonExporter.Format.CSV);
+  }
+
+  @Benchmark
+  public long exportJsonLines() throws IOException {
+    return exporter.export(NULL_OUTPUT, PersonExporter.Format.JSON_LINES);
+  }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.makotojava.learn.junit.Person;
+import com.makotojava.learn.junit.PersonBulkGenerator;
+import com.makotojava.learn.junit.PersonGenerator;
+
+/**
+ * Person objects generated per second from four threads: PersonGenerator
+ * (one shared Random, warmed up before every field) against
+ * PersonBulkGenerator (a SplittableRandom per Person).
+ *
+ * Run with: mvn test -P benchmark -Dbenchmark=PersonGeneratorBenchmark
+ *
+ * @author J Steven Perry
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(4)
+@Fork(1)
+public class PersonGeneratorBenchmark {
+
+  private static final long RANGE_SIZE = 1L << 40;
+
+  private final PersonBulkGenerator bulkGenerator = new PersonBulkGenerator(42);
+
+  private final AtomicLong nextRange = new AtomicLong();
+
+  @Benchmark
+  public Person personGenerator() {
+    return PersonGenerator.createPerson();
+  }
+
+  @Benchmark
+  public Person personBulkGenerator(ThreadIndex threadIndex) {
+    return bulkGenerator.createPerson(threadIndex.next++);
+  }
+
+  /**
+   * Each thread works through its own range of indexes, so the threads
+   * share nothing while they generate.
+   */
+  @State(Scope.Thread)
+  public static class ThreadIndex {
+
+    private long next;
+
+    @Setup
+    public void setUp(PersonGeneratorBenchmark benchmark) {
+      next = benchmark.nextRange.getAndAdd(RANGE_SIZE);
+    }
+
+  }
+
+}
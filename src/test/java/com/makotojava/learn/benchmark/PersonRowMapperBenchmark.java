@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.benchmark;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import com.makotojava.learn.junit.Person;
+import com.makotojava.learn.junit.PersonDaoBean;
+import com.makotojava.learn.junit.PersonGenerator;
+import com.makotojava.learn.junit.PersonRowMapper;
+import com.makotojava.learn.junit.TestSpringConfigurationEmptyDb;
+
+/**
+ * Row-mapping throughput over a full table scan: the old mapper (new
+ * instance per query, columns looked up by name against SELECT *)
+ * against the shared PersonRowMapper (columns by position against an
+ * explicit projection). One operation maps every row in the table.
+ * 
+ * Run with: mvn test -P benchmark -Dbenchmark=PersonRowMapperBenchmark
+ * 
+ * @author J Steven Perry
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PersonRowMapperBenchmark {
+
+  @Param({ "1000000" })
+  public int rows;
+
+  private AnnotationConfigApplicationContext ctx;
+
+  private JdbcTemplate jdbc;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    ctx = new AnnotationConfigApplicationContext(TestSpringConfigurationEmptyDb.class);
+    PersonDaoBean personDao = ctx.getBean(PersonDaoBean.class);
+    personDao.setBatchSize(5000);
+    personDao.addAll(IntStream.range(0, rows)
+        .mapToObj(aa -> new Person("Last" + aa / 1000, "First" + aa, 28, PersonGenerator.BLUE, PersonGenerator.MALE)));
+    jdbc = new JdbcTemplate(ctx.getBean(EmbeddedDatabase.class));
+    jdbc.setFetchSize(1000);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    ctx.getBean(EmbeddedDatabase.class).shutdown();
+    ctx.close();
+  }
+
+  @Benchmark
+  public void byName(Blackhole blackhole) {
+    RowMapper<Person> rowMapper = new ByNameRowMapper();
+    jdbc.query("SELECT * FROM " + Person.TABLE_NAME, rs -> {
+      blackhole.consume(rowMapper.mapRow(rs, 0));
+    });
+  }
+
+  @Benchmark
+  public void byPosition(Blackhole blackhole) {
+    jdbc.query("SELECT " + PersonRowMapper.COLUMNS + " FROM " + Person.TABLE_NAME, rs -> {
+      blackhole.consume(PersonRowMapper.INSTANCE.mapRow(rs, 0));
+    });
+  }
+
+  /**
+   * The way PersonDaoBean used to map rows.
+   */
+  private static class ByNameRowMapper implements RowMapper<Person> {
+
+    @Override
+    public Person mapRow(ResultSet rs, int rowNum) throws SQLException {
+      long id = rs.getLong("id");
+      int age = rs.getInt("age");
+      String eyeColor = rs.getString("eye_color");
+      String gender = rs.getString("gender");
+      String lastName = rs.getString("last_name");
+      String firstName = rs.getString("first_name");
+      return new Person(lastName, firstName, age, eyeColor, gender).withId(id);
+    }
+
+  }
+
+}
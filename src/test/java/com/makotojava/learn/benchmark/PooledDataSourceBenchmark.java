@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import com.makotojava.learn.junit.Person;
+import com.makotojava.learn.junit.PersonDaoBean;
+import com.makotojava.learn.junit.TestSpringConfigurationPooled;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Measures findById() latency with 1, 8, 64 and 256 concurrent callers,
+ * with every call opening its own connection versus borrowing one from the
+ * pool built by AbstractSpringConfiguration.createPooledDataSource().
+ * 
+ * SampleTime mode reports the p0.50 and p0.99 percentiles. The pool size
+ * can be changed with -DdataSource.pool.maxSize=N in the forked JVM, e.g.
+ * -jvmArgsAppend -DdataSource.pool.maxSize=32.
+ * 
+ * Run with: mvn test -P benchmark -Dbenchmark=PooledDataSourceBenchmark
+ * 
+ * @author J Steven Perry
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PooledDataSourceBenchmark {
+
+  @Param({ "false", "true" })
+  public boolean pooled;
+
+  private AnnotationConfigApplicationContext ctx;
+
+  private EmbeddedDatabase embeddedDb;
+
+  private PersonDaoBean personDao;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    if (pooled) {
+      ctx = new AnnotationConfigApplicationContext(TestSpringConfigurationPooled.class);
+      personDao = ctx.getBean(PersonDaoBean.class);
+      embeddedDb = (EmbeddedDatabase) ((HikariDataSource) ctx.getBean("dataSource")).getDataSource();
+    } else {
+      embeddedDb = new EmbeddedDatabaseBuilder()
+          .generateUniqueName(true)
+          .setType(EmbeddedDatabaseType.DERBY)
+          .addScript("sql/create_tables.sql")
+          .addScript("sql/insert_data.sql")
+          .build();
+      personDao = new PersonDaoBean();
+      personDao.setDataSource(embeddedDb);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (ctx != null) {
+      ctx.close();
+    }
+    embeddedDb.shutdown();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public Person findById_1() {
+    return findById();
+  }
+
+  @Benchmark
+  @Threads(8)
+  public Person findById_8() {
+    return findById();
+  }
+
+  @Benchmark
+  @Threads(64)
+  public Person findById_64() {
+    return findById();
+  }
+
+  @Benchmark
+  @Threads(256)
+  public Person findById_256() {
+    return findById();
+  }
+
+  private Person findById() {
+    // IDs 1-6 come from insert_data.sql
+    return personDao.findById(ThreadLocalRandom.current().nextLong(1, 7));
+  }
+
+}
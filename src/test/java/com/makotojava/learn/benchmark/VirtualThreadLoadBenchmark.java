@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.benchmark;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import com.makotojava.learn.junit.AbstractSpringConfiguration;
+import com.makotojava.learn.junit.AsyncPersonDao;
+import com.makotojava.learn.junit.PersonDaoBean;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Fans out a burst of concurrent findByIdAsync() calls against the pooled
+ * embedded database and waits for all of them, running the calls on a
+ * fixed pool of platform threads versus one virtual thread per call.
+ * 
+ * Derby's embedded driver runs each statement in a synchronized block, so
+ * on JDK 21 to 23 the virtual threads pin their carriers while they are in
+ * the driver, and no more calls run at once than there are carriers. Add
+ * -jvmArgsAppend -Djdk.tracePinnedThreads=full to see where.
+ * 
+ * The pool is built directly rather than through a Spring context, because
+ * Spring 4 cannot generate its configuration classes on JDK 21.
+ * 
+ * The virtual thread runs need JDK 21 or later; on older JVMs their setup
+ * fails and JMH moves on to the next run. Point the benchmark JVM at a
+ * newer JDK with -jvm, e.g.:
+ * 
+ * Run with: mvn test -P benchmark "-Dbenchmark=VirtualThreadLoadBenchmark -jvm /path/to/jdk21/bin/java"
+ * 
+ * @author J Steven Perry
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VirtualThreadLoadBenchmark {
+
+  /**
+   * Platform threads in the fixed pool. Past the Connection pool size
+   * (AbstractSpringConfiguration.DEFAULT_POOL_MAX_SIZE), extra threads just wait for a Connection.
+   */
+  private static final int PLATFORM_THREADS = 64;
+
+  @Param({ "platform", "virtual" })
+  public String threads;
+
+  @Param({ "1000", "10000" })
+  public int concurrentCalls;
+
+  private EmbeddedDatabase embeddedDb;
+
+  private HikariDataSource dataSource;
+
+  private AsyncPersonDao asyncPersonDao;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    embeddedDb = new EmbeddedDatabaseBuilder()
+        .generateUniqueName(true)
+        .setType(EmbeddedDatabaseType.DERBY)
+        .addScript("sql/create_tables.sql")
+        .addScript("sql/insert_data.sql")
+        .build();
+    HikariConfig config = new HikariConfig();
+    config.setDataSource(embeddedDb);
+    config.setMaximumPoolSize(AbstractSpringConfiguration.DEFAULT_POOL_MAX_SIZE);
+    dataSource = new HikariDataSource(config);
+    PersonDaoBean personDao = new PersonDaoBean();
+    personDao.setDataSource(dataSource);
+    asyncPersonDao = "virtual".equals(threads)
+        ? AsyncPersonDao.virtualThreads(personDao, concurrentCalls)
+        : new AsyncPersonDao(personDao, PLATFORM_THREADS, concurrentCalls);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (asyncPersonDao != null) {
+      asyncPersonDao.close();
+    }
+    dataSource.close();
+    embeddedDb.shutdown();
+  }
+
+  @Benchmark
+  public void findByIdBurst() {
+    CompletableFuture<?>[] futures = new CompletableFuture<?>[concurrentCalls];
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (int aa = 0; aa < concurrentCalls; aa++) {
+      // IDs 1-6 come from insert_data.sql
+      futures[aa] = asyncPersonDao.findByIdAsync(random.nextLong(1, 7));
+    }
+    CompletableFuture.allOf(futures).join();
+  }
+
+}
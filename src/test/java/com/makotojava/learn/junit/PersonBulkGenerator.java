@@ -0,0 +1,158 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.makotojava.learn.junit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import org.apache.log4j.Logger;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Generates large populations of Person objects (or the raw rows behind
+ * them) quickly and reproducibly.
+ *
+ * Unlike PersonGenerator there is no shared Random: the Person at each
+ * index is worked out from the seed and the index alone, with its own
+ * SplittableRandom. So the same seed always gives the same population,
+ * whether it is generated sequentially, in parallel or out of order, and
+ * generating in parallel does not contend on anything.
+ *
+ * Names come from a PersonNameEncoder, so every (last name, first name)
+ * pair is unique and the rows can be inserted without breaking uc_1, for
+ * populations of up to PersonNameEncoder.CAPACITY. Age, eye color and
+ * gender are drawn from the same ranges as PersonGenerator.
+ *
+ * @author J Steven Perry
+ *
+ */
+public class PersonBulkGenerator {
+
+  private static final Logger log = Logger.getLogger(PersonBulkGenerator.class);
+
+  /**
+   * The default number of rows per JDBC batch in insert().
+   */
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+
+  private static final String INSERT_SQL =
+      "INSERT INTO " + Person.TABLE_NAME + "(last_name, first_name, age, eye_color, gender) VALUES(?, ?, ?, ?, ?)";
+
+  /**
+   * Odd constant from the golden ratio, as used by SplittableRandom, so
+   * consecutive indexes land far apart.
+   */
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+  private final long seed;
+
+  private final PersonNameEncoder nameEncoder;
+
+  public PersonBulkGenerator(long seed) {
+    this.seed = seed;
+    this.nameEncoder = new PersonNameEncoder(seed);
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  /**
+   * @return Person - the Person at the specified index. Always the same
+   *         for the same seed and index.
+   */
+  public Person createPerson(long index) {
+    String[] name = nameEncoder.encode(index);
+    SplittableRandom random = new SplittableRandom(mix(seed + index * GOLDEN_GAMMA));
+    return new Person(name[0], name[1], random.nextInt(PersonGenerator.AGE_MAX) + 1,
+        PersonGenerator.EYE_COLORS[random.nextInt(PersonGenerator.EYE_COLORS.length)],
+        PersonGenerator.GENDERS[random.nextInt(PersonGenerator.GENDERS.length)]);
+  }
+
+  /**
+   * @return Object[] - the row for the Person at the specified index:
+   *         last name, first name, age, eye color and gender, in the order
+   *         of the INSERT columns.
+   */
+  public Object[] createRow(long index) {
+    Person person = createPerson(index);
+    return new Object[] { person.getLastName(), person.getFirstName(), person.getAge(), person.getEyeColor(),
+        person.getGender() };
+  }
+
+  /**
+   * @return Stream<Person> - the Person objects at indexes 0 to count - 1,
+   *         in index order. Call parallel() on it to generate them on
+   *         every core; the Person objects are the same either way.
+   */
+  public Stream<Person> stream(long count) {
+    return LongStream.range(0, count).mapToObj(this::createPerson);
+  }
+
+  /**
+   * @return Stream<Object[]> - the rows at indexes 0 to count - 1, in
+   *         index order. See createRow().
+   */
+  public Stream<Object[]> rows(long count) {
+    return LongStream.range(0, count).mapToObj(this::createRow);
+  }
+
+  public long insert(JdbcTemplate jdbc, long count) {
+    return insert(jdbc, count, DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Inserts the rows at indexes 0 to count - 1 straight into the Person
+   * table, batchSize rows per JDBC batch, holding no more than one batch
+   * in memory.
+   *
+   * @return long - the number of rows inserted.
+   */
+  public long insert(JdbcTemplate jdbc, long count, int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be at least 1, was " + batchSize);
+    }
+    long start = System.currentTimeMillis();
+    long ret = 0;
+    List<Object[]> batch = new ArrayList<>(batchSize);
+    for (long index = 0; index < count; index++) {
+      batch.add(createRow(index));
+      if (batch.size() == batchSize || index == count - 1) {
+        for (int updateCount : jdbc.batchUpdate(INSERT_SQL, batch)) {
+          // Some drivers only report that a row in the batch worked, not how many
+          ret += (updateCount < 0) ? 1 : updateCount;
+        }
+        batch.clear();
+      }
+    }
+    log.info("Inserted " + ret + " rows in " + (System.currentTimeMillis() - start) + "ms");
+    return ret;
+  }
+
+  /**
+   * Stafford's variant 13 of the MurmurHash3 finalizer, which is what
+   * SplittableRandom uses to mix its seeds.
+   */
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+}
@@ -24,7 +24,7 @@ import java.util.Random;
  *
  */
 public class PersonGenerator {
-  private static final int AGE_MAX = 50;
+  static final int AGE_MAX = 50;
 
   private static Random rng = new Random(System.currentTimeMillis());
 
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.makotojava.learn.junit;
+
+import java.util.SplittableRandom;
+
+/**
+ * Turns a counter into a (last name, first name) pair that no other
+ * counter value turns into, so populations of millions of Person objects
+ * can be generated without breaking uc_1 and without remembering which
+ * names have been used.
+ *
+ * Each name is built from syllables: consonant, vowel, consonant, vowel,
+ * then an ending, e.g. "Bazog" or "Kaveth". Every part is one digit of
+ * the index in a mixed radix, with the digits of the two names
+ * interleaved. Letters and endings can always be told apart, so no two
+ * indexes give the same name pair. Interleaving also means last names
+ * repeat across a population (about 1,500 last names for a million
+ * people), much like real ones do.
+ *
+ * The seed shuffles the letters and endings, so different seeds give
+ * different-looking names.
+ *
+ * @author J Steven Perry
+ *
+ */
+public class PersonNameEncoder {
+
+  private static final String[] CONSONANTS = {
+      "b", "c", "d", "f", "g", "h", "j", "k", "l", "m", "n", "p", "r", "s", "t", "v", "w", "x", "z"
+  };
+
+  private static final String[] VOWELS = { "a", "e", "i", "o", "u" };
+
+  /**
+   * Must all be different, because the ending is whatever follows the
+   * first four letters.
+   */
+  private static final String[] ENDINGS = {
+      "", "g", "l", "n", "r", "s", "x", "th", "xl", "gar", "zor", "nag", "dhen", "ath", "on", "ix"
+  };
+
+  /**
+   * The radix of each digit, least significant first. Even digits belong
+   * to the last name, odd digits to the first name.
+   */
+  private static final int[] RADIXES = {
+      CONSONANTS.length, CONSONANTS.length, VOWELS.length, VOWELS.length, ENDINGS.length, ENDINGS.length,
+      CONSONANTS.length, CONSONANTS.length, VOWELS.length, VOWELS.length
+  };
+
+  /**
+   * The number of unique name pairs (a little over 20 billion).
+   */
+  public static final long CAPACITY;
+
+  static {
+    long capacity = 1;
+    for (int radix : RADIXES) {
+      capacity *= radix;
+    }
+    CAPACITY = capacity;
+  }
+
+  private final String[] consonants;
+  private final String[] vowels;
+  private final String[] endings;
+
+  public PersonNameEncoder(long seed) {
+    SplittableRandom random = new SplittableRandom(seed);
+    consonants = shuffle(CONSONANTS, random);
+    vowels = shuffle(VOWELS, random);
+    endings = shuffle(ENDINGS, random);
+  }
+
+  /**
+   * @return String[] - the last name and first name for the specified
+   *         index, which must be between 0 and CAPACITY - 1.
+   */
+  public String[] encode(long index) {
+    if (index < 0 || index >= CAPACITY) {
+      throw new IllegalArgumentException("Index must be between 0 and " + (CAPACITY - 1) + ", was " + index);
+    }
+    int[] digits = new int[RADIXES.length];
+    long remaining = index;
+    for (int aa = 0; aa < RADIXES.length; aa++) {
+      digits[aa] = (int) (remaining % RADIXES[aa]);
+      remaining /= RADIXES[aa];
+    }
+    return new String[] { name(digits, 0), name(digits, 1) };
+  }
+
+  /**
+   * Builds one name from every other digit, starting at the specified one.
+   */
+  private String name(int[] digits, int first) {
+    StringBuilder ret = new StringBuilder(12)
+        .append(Character.toUpperCase(consonants[digits[first]].charAt(0)))
+        .append(vowels[digits[first + 2]])
+        .append(consonants[digits[first + 6]])
+        .append(vowels[digits[first + 8]])
+        .append(endings[digits[first + 4]]);
+    return ret.toString();
+  }
+
+  private static String[] shuffle(String[] values, SplittableRandom random) {
+    String[] ret = values.clone();
+    for (int aa = ret.length - 1; aa > 0; aa--) {
+      int bb = random.nextInt(aa + 1);
+      String swap = ret[aa];
+      ret[aa] = ret[bb];
+      ret[bb] = swap;
+    }
+    return ret;
+  }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+/**
+ * Concrete implementation of the AbstractSpringConfiguration class
+ * so we can run tests.
+ * 
+ * This one provides an Embedded Derby database, along with some test
+ * data, behind a connection pool. The pooled DataSource's getDataSource()
+ * is the EmbeddedDatabase, so shut that down when finished with it.
+ * 
+ * @author J Steven Perry
+ *
+ */
+@Configuration
+@ComponentScan(basePackages = "com.makotojava.learn")
+public class TestSpringConfigurationPooled extends AbstractSpringConfiguration {
+
+  @Autowired
+  private Environment environment;
+
+  @Override
+  @Bean(name = "dataSource")
+  public DataSource getDataSource() {
+    EmbeddedDatabaseBuilder builder = new EmbeddedDatabaseBuilder();
+    EmbeddedDatabase embeddedDb = builder
+        .generateUniqueName(true)
+        .setType(EmbeddedDatabaseType.DERBY)
+        .ignoreFailedDrops(true)
+        .addScript("sql/create_tables.sql")
+        .addScript("sql/insert_data.sql")
+        .build();
+    return createPooledDataSource(embeddedDb, environment);
+  }
+
+}
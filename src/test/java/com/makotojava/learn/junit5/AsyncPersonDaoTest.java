@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import com.makotojava.learn.junit.AsyncPersonDao;
+import com.makotojava.learn.junit.AsyncPersonDao.Operation;
+import com.makotojava.learn.junit.DelegatingPersonDao;
+import com.makotojava.learn.junit.Person;
+import com.makotojava.learn.junit.PersonDaoBean;
+import com.makotojava.learn.junit.PersonGenerator;
+import com.makotojava.learn.junit.PersonTestEnum;
+import com.makotojava.learn.junit.TestSpringConfiguration;
+
+/**
+ * Test class for AsyncPersonDao.
+ * 
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing AsyncPersonDao")
+@RunWith(JUnitPlatform.class)
+public class AsyncPersonDaoTest extends AbstractBaseTest {
+
+  private AnnotationConfigApplicationContext ctx;
+
+  private PersonDaoBean personDaoBean;
+
+  @BeforeEach
+  void setUp() {
+    ctx = new AnnotationConfigApplicationContext(TestSpringConfiguration.class);
+    personDaoBean = ctx.getBean(PersonDaoBean.class);
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    DataSource dataSource = (DataSource) ctx.getBean("dataSource");
+    if (dataSource instanceof EmbeddedDatabase) {
+      ((EmbeddedDatabase) dataSource).shutdown();
+    }
+    ctx.close();
+  }
+
+  @Test
+  @DisplayName("Concurrent findByIdAsync calls should all complete and be counted")
+  public void findByIdAsync() throws Exception {
+    try (AsyncPersonDao classUnderTest = new AsyncPersonDao(personDaoBean, 4, 100)) {
+      List<CompletableFuture<Person>> futures = new ArrayList<>();
+      for (long id = 1; id <= PersonTestEnum.values().length; id++) {
+        futures.add(classUnderTest.findByIdAsync(id));
+      }
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+      for (int aa = 0; aa < futures.size(); aa++) {
+        Person person = futures.get(aa).get();
+        assertNotNull(person);
+        assertEquals(Long.valueOf(aa + 1), person.getId());
+      }
+      AsyncPersonDao.OperationStats stats = classUnderTest.getStats(Operation.FIND_BY_ID);
+      assertAll(
+          () -> assertEquals(PersonTestEnum.values().length, stats.getCount()),
+          () -> assertEquals(0, stats.getFailureCount()),
+          () -> assertTrue(stats.getMaxNanos() >= stats.getMeanNanos()),
+          () -> assertTrue(stats.getMeanNanos() > 0),
+          () -> assertEquals(0, classUnderTest.getStats(Operation.ADD).getCount()));
+    }
+  }
+
+  @Test
+  @DisplayName("addAsync then findAllAsync should see the new Person")
+  public void addAsync() throws Exception {
+    try (AsyncPersonDao classUnderTest = new AsyncPersonDao(personDaoBean)) {
+      Person added = classUnderTest.addAsync(PersonGenerator.createPerson()).get(10, TimeUnit.SECONDS);
+      assertNotNull(added.getId());
+      assertEquals(PersonTestEnum.values().length + 1,
+          classUnderTest.findAllAsync().get(10, TimeUnit.SECONDS).size());
+    }
+  }
+
+  @Test
+  @DisplayName("Calls past the queue capacity should be rejected, not block")
+  public void backpressure() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    DelegatingPersonDao blockingDao = new DelegatingPersonDao(personDaoBean) {
+      @Override
+      public Person findById(Long id) {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return super.findById(id);
+      }
+    };
+    try (AsyncPersonDao classUnderTest = new AsyncPersonDao(blockingDao, 1, 1)) {
+      CompletableFuture<Person> running = classUnderTest.findByIdAsync(1L);
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+      CompletableFuture<Person> queued = classUnderTest.findByIdAsync(2L);
+      CompletableFuture<Person> rejected = classUnderTest.findByIdAsync(3L);
+      assertTrue(rejected.isCompletedExceptionally());
+      ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get());
+      assertTrue(e.getCause() instanceof RejectedExecutionException);
+      release.countDown();
+      assertAll(
+          () -> assertEquals(Long.valueOf(1), running.get(10, TimeUnit.SECONDS).getId()),
+          () -> assertEquals(Long.valueOf(2), queued.get(10, TimeUnit.SECONDS).getId()),
+          () -> assertEquals(1, classUnderTest.getRejectedCount()));
+    }
+  }
+
+  @Test
+  @DisplayName("A failing call should complete exceptionally and count as a failure")
+  public void failure() throws Exception {
+    try (AsyncPersonDao classUnderTest = new AsyncPersonDao(personDaoBean)) {
+      CompletableFuture<List<Person>> future = classUnderTest.findPageAsync(null, 0);
+      assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+      assertEquals(1, classUnderTest.getStats(Operation.FIND_PAGE).getFailureCount());
+    }
+  }
+
+  @Test
+  @DisplayName("virtualThreads should run calls on virtual threads, or say they are not available")
+  public void virtualThreads() throws Exception {
+    if (AsyncPersonDao.isVirtualThreadsSupported()) {
+      try (AsyncPersonDao classUnderTest = AsyncPersonDao.virtualThreads(personDaoBean, 100)) {
+        assertTrue(classUnderTest.isVirtualThreads());
+        assertEquals(Long.valueOf(1), classUnderTest.findByIdAsync(1L).get(10, TimeUnit.SECONDS).getId());
+      }
+      try (AsyncPersonDao classUnderTest = AsyncPersonDao.virtualThreads(personDaoBean)) {
+        assertEquals(Long.valueOf(1), classUnderTest.findByIdAsync(1L).get(10, TimeUnit.SECONDS).getId());
+      }
+    } else {
+      assertThrows(UnsupportedOperationException.class, () -> AsyncPersonDao.virtualThreads(personDaoBean, 100));
+      assertThrows(UnsupportedOperationException.class, () -> AsyncPersonDao.virtualThreads(personDaoBean));
+    }
+  }
+
+}
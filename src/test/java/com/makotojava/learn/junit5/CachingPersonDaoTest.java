@@ -0,0 +1,202 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import com.makotojava.learn.junit.AbstractSpringConfiguration;
+import com.makotojava.learn.junit.CachingPersonDao;
+import com.makotojava.learn.junit.Person;
+import com.makotojava.learn.junit.PersonDao;
+import com.makotojava.learn.junit.PersonDaoBean;
+import com.makotojava.learn.junit.PersonGenerator;
+import com.makotojava.learn.junit.TestSpringConfiguration;
+
+/**
+ * Test class for CachingPersonDao.
+ * 
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing CachingPersonDao")
+@RunWith(JUnitPlatform.class)
+public class CachingPersonDaoTest extends AbstractBaseTest {
+
+  private AnnotationConfigApplicationContext ctx;
+
+  private PersonDaoBean personDaoBean;
+
+  @BeforeEach
+  void setUp() {
+    ctx = new AnnotationConfigApplicationContext(TestSpringConfiguration.class);
+    personDaoBean = ctx.getBean(PersonDaoBean.class);
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    DataSource dataSource = (DataSource) ctx.getBean("dataSource");
+    if (dataSource instanceof EmbeddedDatabase) {
+      ((EmbeddedDatabase) dataSource).shutdown();
+    }
+    ctx.close();
+  }
+
+  @Test
+  @DisplayName("Second findById should be served from the cache")
+  public void findById_hit() {
+    CachingPersonDao classUnderTest = new CachingPersonDao(personDaoBean);
+    Person first = classUnderTest.findById(1L);
+    Person second = classUnderTest.findById(1L);
+    assertNotNull(first);
+    assertAll(
+        () -> assertSame(first, second),
+        () -> assertEquals(1, classUnderTest.getMissCount()),
+        () -> assertEquals(1, classUnderTest.getHitCount()));
+  }
+
+  @Test
+  @DisplayName("findAllById should only load the IDs that are not cached")
+  public void findAllById_partialHit() {
+    CachingPersonDao classUnderTest = new CachingPersonDao(personDaoBean);
+    Person cached = classUnderTest.findById(2L);
+    Map<Long, Person> found = classUnderTest.findAllById(Arrays.asList(1L, 2L, 3L));
+    assertAll(
+        () -> assertEquals(Arrays.asList(1L, 2L, 3L), new ArrayList<>(found.keySet())),
+        () -> assertSame(cached, found.get(2L)),
+        () -> assertEquals(1, classUnderTest.getHitCount()),
+        () -> assertEquals(3, classUnderTest.getMissCount()),
+        () -> assertSame(found.get(3L), classUnderTest.findById(3L)));
+  }
+
+  @Test
+  @DisplayName("add should not populate the cache, so a new Person is read back the way the DB has it")
+  public void add_doesNotPopulate() {
+    CachingPersonDao classUnderTest = new CachingPersonDao(personDaoBean);
+    Person person = classUnderTest
+        .add(new Person("Anon", "Ag", 30, PersonGenerator.BLUE, PersonGenerator.MALE));
+    assertNotNull(person);
+    assertEquals(0, classUnderTest.size());
+    Person found = classUnderTest.findById(person.getId());
+    assertAll(
+        () -> assertEquals(person, found),
+        () -> assertNotNull(found.getWhenCreated()),
+        () -> assertEquals(1, classUnderTest.getMissCount()),
+        () -> assertSame(found, classUnderTest.findById(person.getId())));
+  }
+
+  @Test
+  @DisplayName("A null ID should not be found and should not touch the cache")
+  public void nullId() {
+    CachingPersonDao classUnderTest = new CachingPersonDao(personDaoBean);
+    assertAll(
+        () -> assertNull(classUnderTest.findById(null)),
+        () -> assertFalse(classUnderTest.existsById(null)),
+        () -> assertEquals(0, classUnderTest.size()),
+        () -> assertEquals(0, classUnderTest.getMissCount()));
+  }
+
+  @Test
+  @DisplayName("update and delete should invalidate the cache")
+  public void updateAndDelete_invalidate() {
+    CachingPersonDao classUnderTest = new CachingPersonDao(personDaoBean);
+    Person person = classUnderTest.findById(1L);
+    Person personToUpdate = new Person(person.getLastName(), person.getFirstName(), person.getAge() + 10,
+        person.getEyeColor(), person.getGender()).withId(person.getId());
+    assertTrue(classUnderTest.update(personToUpdate));
+    assertEquals(person.getAge() + 10, classUnderTest.findById(1L).getAge());
+    assertNotNull(classUnderTest.delete(personToUpdate));
+    assertEquals(null, classUnderTest.findById(1L));
+    assertEquals(3, classUnderTest.getMissCount());
+  }
+
+  @Test
+  @DisplayName("upsert should invalidate the cached Person with the same name")
+  public void upsert_invalidates() {
+    CachingPersonDao classUnderTest = new CachingPersonDao(personDaoBean);
+    Person person = classUnderTest.findById(1L);
+    classUnderTest.findById(2L);
+    assertTrue(classUnderTest.upsert(new Person(person.getLastName(), person.getFirstName(), person.getAge() + 10,
+        person.getEyeColor(), person.getGender())));
+    assertAll(
+        () -> assertEquals(1, classUnderTest.size()),
+        () -> assertEquals(person.getAge() + 10, classUnderTest.findById(1L).getAge()));
+  }
+
+  @Test
+  @DisplayName("Least recently used Person should be evicted when the cache is full")
+  public void findById_evictsWhenFull() {
+    CachingPersonDao classUnderTest = new CachingPersonDao(personDaoBean, 1, 1, TimeUnit.HOURS);
+    classUnderTest.findById(1L);
+    classUnderTest.findById(2L);
+    classUnderTest.findById(1L);
+    assertAll(
+        () -> assertEquals(1, classUnderTest.size()),
+        () -> assertEquals(2, classUnderTest.getEvictionCount()),
+        () -> assertEquals(3, classUnderTest.getMissCount()));
+  }
+
+  @Test
+  @DisplayName("Person should be evicted when its time to live is up")
+  public void findById_evictsWhenExpired() throws Exception {
+    CachingPersonDao classUnderTest = new CachingPersonDao(personDaoBean, 10, 1, TimeUnit.MILLISECONDS);
+    classUnderTest.findById(1L);
+    Thread.sleep(10);
+    classUnderTest.findById(1L);
+    assertAll(
+        () -> assertEquals(1, classUnderTest.getEvictionCount()),
+        () -> assertEquals(2, classUnderTest.getMissCount()));
+  }
+
+  @Test
+  @DisplayName("Cache should be turned on by the personDao.cache.enabled property")
+  public void configuration_enablesCache() {
+    assertSame(personDaoBean, ctx.getBean(PersonDao.class));
+    // Both contexts use the same embedded DB name, so only one can be up at a time
+    ((EmbeddedDatabase) ctx.getBean("dataSource")).shutdown();
+    System.setProperty(AbstractSpringConfiguration.PERSON_DAO_CACHE_ENABLED, "true");
+    try (AnnotationConfigApplicationContext cachingCtx =
+        new AnnotationConfigApplicationContext(TestSpringConfiguration.class)) {
+      assertTrue(cachingCtx.getBean(PersonDao.class) instanceof CachingPersonDao);
+      ((EmbeddedDatabase) cachingCtx.getBean("dataSource")).shutdown();
+    } finally {
+      System.clearProperty(AbstractSpringConfiguration.PERSON_DAO_CACHE_ENABLED);
+    }
+  }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import com.makotojava.learn.junit.DelegatingPersonDao;
+import com.makotojava.learn.junit.LastNameIndexedPersonDao;
+import com.makotojava.learn.junit.Person;
+import com.makotojava.learn.junit.PersonDaoBean;
+import com.makotojava.learn.junit.PersonGenerator;
+import com.makotojava.learn.junit.TestSpringConfiguration;
+
+/**
+ * Test class for LastNameIndexedPersonDao.
+ * 
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing LastNameIndexedPersonDao")
+@RunWith(JUnitPlatform.class)
+public class LastNameIndexedPersonDaoTest extends AbstractBaseTest {
+
+  private ApplicationContext ctx;
+
+  private PersonDaoBean personDaoBean;
+
+  private LastNameIndexedPersonDao classUnderTest;
+
+  @BeforeEach
+  void setUp() {
+    ctx = new AnnotationConfigApplicationContext(TestSpringConfiguration.class);
+    personDaoBean = ctx.getBean(PersonDaoBean.class);
+    classUnderTest = new LastNameIndexedPersonDao(personDaoBean);
+    classUnderTest.warmUp();
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    DataSource dataSource = (DataSource) ctx.getBean("dataSource");
+    if (dataSource instanceof EmbeddedDatabase) {
+      ((EmbeddedDatabase) dataSource).shutdown();
+    }
+  }
+
+  @Test
+  @DisplayName("warmUp should index every Person in the database")
+  public void warmUp() {
+    assertAll(
+        () -> assertTrue(classUnderTest.isWarm()),
+        () -> assertEquals(Collections.singleton(1L), classUnderTest.findIdsByLastName("Wragdhen")),
+        () -> assertTrue(classUnderTest.findIdsByLastName("Anon").isEmpty()),
+        () -> assertTrue(classUnderTest.findAllByLastName("Anon").isEmpty()),
+        () -> assertTrue(classUnderTest.verify().isEmpty()));
+  }
+
+  @Test
+  @DisplayName("warmUp on a warm index should keep answering and keep writes made during the rebuild")
+  public void warmUp_again() {
+    Person deleted = personDaoBean.findById(6L);
+    List<Person> snapshot = personDaoBean.findAll();
+    AtomicReference<Runnable> duringScan = new AtomicReference<>(() -> {
+    });
+    LastNameIndexedPersonDao rebuilt = new LastNameIndexedPersonDao(new DelegatingPersonDao(personDaoBean) {
+      @Override
+      public void forEach(Consumer<Person> action) {
+        duringScan.get().run();
+        // Like a stale cursor, the scan still returns rows deleted since it started
+        snapshot.forEach(action);
+      }
+    });
+    rebuilt.warmUp();
+    List<Long> countsDuringScan = new ArrayList<>();
+    List<Person> added = new ArrayList<>();
+    duringScan.set(() -> {
+      countsDuringScan.add(rebuilt.countByLastName("Wragdhen"));
+      rebuilt.delete(deleted);
+      added.add(rebuilt.add(new Person("Anon", "Ag", 30, PersonGenerator.BLUE, PersonGenerator.MALE)));
+    });
+    rebuilt.warmUp();
+    assertAll(
+        () -> assertEquals(Collections.singletonList(1L), countsDuringScan),
+        () -> assertFalse(rebuilt.existsById(deleted.getId())),
+        () -> assertTrue(rebuilt.findIdsByLastName(deleted.getLastName()).isEmpty()),
+        () -> assertEquals(Collections.singleton(added.get(0).getId()), rebuilt.findIdsByLastName("Anon")));
+  }
+
+  @Test
+  @DisplayName("Null IDs and last names should match nobody")
+  public void nulls() {
+    assertAll(
+        () -> assertFalse(classUnderTest.existsById(null)),
+        () -> assertTrue(classUnderTest.findIdsByLastName(null).isEmpty()),
+        () -> assertEquals(0, classUnderTest.countByLastName(null)),
+        () -> assertTrue(classUnderTest.findAllByLastName(null).isEmpty()));
+  }
+
+  @Test
+  @DisplayName("add, update and delete should keep the index consistent")
+  public void writes_maintainIndex() {
+    Person added = classUnderTest.add(new Person("Jaxl", "Ag", 30, PersonGenerator.BLUE, PersonGenerator.MALE));
+    assertNotNull(added);
+    assertEquals(new HashSet<>(Arrays.asList(2L, added.getId())), classUnderTest.findIdsByLastName("Jaxl"));
+    Person renamed = new Person("Anon", "Ag", 30, PersonGenerator.BLUE, PersonGenerator.MALE).withId(added.getId());
+    assertTrue(classUnderTest.update(renamed));
+    assertAll(
+        () -> assertEquals(Collections.singleton(2L), classUnderTest.findIdsByLastName("Jaxl")),
+        () -> assertEquals(Collections.singleton(added.getId()), classUnderTest.findIdsByLastName("Anon")),
+        () -> assertEquals(1, classUnderTest.findAllByLastName("Anon").size()));
+    assertNotNull(classUnderTest.delete(renamed));
+    assertAll(
+        () -> assertTrue(classUnderTest.findIdsByLastName("Anon").isEmpty()),
+        () -> assertTrue(classUnderTest.verify().isEmpty()));
+  }
+
+  @Test
+  @DisplayName("updateAll and deleteAllById should keep the index consistent")
+  public void bulkWrites_maintainIndex() {
+    Person renamed = new Person("Anon", "Zelx", 28, PersonGenerator.BLUE, PersonGenerator.MALE).withId(1L);
+    classUnderTest.updateAll(Collections.singletonList(renamed));
+    assertAll(
+        () -> assertTrue(classUnderTest.findIdsByLastName("Wragdhen").isEmpty()),
+        () -> assertEquals(Collections.singleton(1L), classUnderTest.findIdsByLastName("Anon")));
+    classUnderTest.deleteAllById(Arrays.asList(1L, 999L));
+    assertAll(
+        () -> assertTrue(classUnderTest.findIdsByLastName("Anon").isEmpty()),
+        () -> assertTrue(classUnderTest.verify().isEmpty()));
+  }
+
+  @Test
+  @DisplayName("upsert should index a Person it adds")
+  public void upsert_maintainsIndex() {
+    assertTrue(classUnderTest.upsertAll(Arrays.asList(
+        new Person("Anon", "Ag", 30, PersonGenerator.BLUE, PersonGenerator.MALE),
+        new Person("Wragdhen", "Zelx", 38, PersonGenerator.BLUE, PersonGenerator.MALE))).get(0));
+    assertTrue(classUnderTest.upsert(new Person("Bazog", "Bog", 31, PersonGenerator.BROWN, PersonGenerator.FEMALE)));
+    assertAll(
+        () -> assertEquals(1, classUnderTest.findIdsByLastName("Anon").size()),
+        () -> assertEquals(1, classUnderTest.findIdsByLastName("Bazog").size()),
+        () -> assertEquals(Collections.singleton(1L), classUnderTest.findIdsByLastName("Wragdhen")),
+        () -> assertTrue(classUnderTest.verify().isEmpty()));
+  }
+
+  @Test
+  @DisplayName("existsById and countByLastName should be answered from the index")
+  public void existsAndCount_fromIndex() {
+    // Bypass the index, so only the DB knows about this Person
+    Person added = personDaoBean.add(new Person("Jaxl", "Ag", 30, PersonGenerator.BLUE, PersonGenerator.MALE));
+    assertAll(
+        () -> assertTrue(classUnderTest.existsById(1L)),
+        () -> assertFalse(classUnderTest.existsById(added.getId())),
+        () -> assertTrue(personDaoBean.existsById(added.getId())),
+        () -> assertEquals(1, classUnderTest.countByLastName("Jaxl")),
+        () -> assertEquals(2, personDaoBean.countByLastName("Jaxl")));
+  }
+
+  @Test
+  @DisplayName("verify should report writes that bypassed the index")
+  public void verify_detectsBypass() {
+    Person added = personDaoBean.add(new Person("Anon", "Ag", 30, PersonGenerator.BLUE, PersonGenerator.MALE));
+    assertEquals(Collections.singleton(added.getId()), classUnderTest.verify());
+  }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.makotojava.learn.junit5;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import com.makotojava.learn.junit.Person;
+import com.makotojava.learn.junit.PersonBulkGenerator;
+import com.makotojava.learn.junit.PersonDaoBean;
+import com.makotojava.learn.junit.PersonNameEncoder;
+import com.makotojava.learn.junit.TestSpringConfigurationEmptyDb;
+
+/**
+ * Test class for PersonBulkGenerator.
+ *
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing PersonBulkGenerator")
+@RunWith(JUnitPlatform.class)
+public class PersonBulkGeneratorTest extends AbstractBaseTest {
+
+  private static final int COUNT = 10000;
+
+  @Test
+  @DisplayName("The same seed should give the same Person objects, sequentially or in parallel")
+  public void stream_reproducible() {
+    List<Person> sequential = new PersonBulkGenerator(42).stream(COUNT).collect(Collectors.toList());
+    List<Person> parallel = new PersonBulkGenerator(42).stream(COUNT).parallel().collect(Collectors.toList());
+    List<Person> otherSeed = new PersonBulkGenerator(43).stream(COUNT).collect(Collectors.toList());
+    assertAll(
+        () -> assertEquals(sequential, parallel),
+        () -> assertEquals(sequential.get(COUNT - 1), new PersonBulkGenerator(42).createPerson(COUNT - 1)),
+        () -> assertNotEquals(sequential, otherSeed));
+  }
+
+  @Test
+  @DisplayName("Every Person should have a unique name and values PersonGenerator could have made")
+  public void stream_uniqueAndValid() {
+    List<Person> people = new PersonBulkGenerator(7).stream(COUNT).parallel().collect(Collectors.toList());
+    assertAll(
+        () -> assertEquals(COUNT,
+            people.stream().map(person -> person.getLastName() + "," + person.getFirstName()).distinct().count()),
+        () -> assertEquals(COUNT, people.stream()
+            .filter(person -> person.getAge() >= 1 && person.getAge() <= 50)
+            .filter(person -> person.getEyeColorValue() != null && person.getGenderValue() != null)
+            .count()));
+  }
+
+  @Test
+  @DisplayName("PersonNameEncoder should never give two indexes the same name pair")
+  public void nameEncoder_unique() {
+    PersonNameEncoder classUnderTest = new PersonNameEncoder(3);
+    int count = 250000;
+    Set<String> lastNames = new HashSet<>();
+    Set<String> namePairs = new HashSet<>();
+    for (long index = 0; index < count; index++) {
+      String[] name = classUnderTest.encode(index);
+      lastNames.add(name[0]);
+      namePairs.add(name[0] + "," + name[1]);
+    }
+    // The last index uses every digit of both names
+    String[] last = classUnderTest.encode(PersonNameEncoder.CAPACITY - 1);
+    assertAll(
+        () -> assertEquals(count, namePairs.size()),
+        () -> assertTrue(lastNames.size() > 100 && lastNames.size() < count / 10),
+        () -> assertFalse(namePairs.contains(last[0] + "," + last[1])),
+        () -> assertTrue(last[0].length() <= 64 && last[1].length() <= 64),
+        () -> assertThrows(IllegalArgumentException.class, () -> classUnderTest.encode(PersonNameEncoder.CAPACITY)));
+  }
+
+  @Test
+  @DisplayName("insert should add every row, matching the generated Person objects")
+  public void insert() {
+    AnnotationConfigApplicationContext ctx = new AnnotationConfigApplicationContext(
+        TestSpringConfigurationEmptyDb.class);
+    try {
+      EmbeddedDatabase dataSource = ctx.getBean(EmbeddedDatabase.class);
+      PersonBulkGenerator classUnderTest = new PersonBulkGenerator(11);
+      long inserted = classUnderTest.insert(new JdbcTemplate(dataSource), 2500, 1000);
+      PersonDaoBean personDao = ctx.getBean(PersonDaoBean.class);
+      Person first = personDao.findById(1L);
+      assertAll(
+          () -> assertEquals(2500, inserted),
+          () -> assertEquals(2500, personDao.countAll()),
+          () -> assertEquals(classUnderTest.createPerson(0), first));
+      dataSource.shutdown();
+    } finally {
+      ctx.close();
+    }
+  }
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.makotojava.learn.junit5;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import com.makotojava.learn.junit.Person;
+import com.makotojava.learn.junit.PersonBulkGenerator;
+import com.makotojava.learn.junit.PersonCsvLoader;
+import com.makotojava.learn.junit.PersonDaoBean;
+import com.makotojava.learn.junit.PersonExporter;
+import com.makotojava.learn.junit.PersonExporter.Format;
+import com.makotojava.learn.junit.TestSpringConfigurationEmptyDb;
+
+/**
+ * Test class for PersonCsvLoader.
+ *
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing PersonCsvLoader")
+@RunWith(JUnitPlatform.class)
+public class PersonCsvLoaderTest extends AbstractBaseTest {
+
+  private static final int ROWS = 2500;
+
+  private AnnotationConfigApplicationContext ctx;
+
+  private PersonDaoBean personDao;
+
+  private PersonCsvLoader classUnderTest;
+
+  private Path csvFile;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    ctx = new AnnotationConfigApplicationContext(TestSpringConfigurationEmptyDb.class);
+    personDao = ctx.getBean(PersonDaoBean.class);
+    classUnderTest = new PersonCsvLoader((DataSource) ctx.getBean("dataSource"));
+    classUnderTest.setBatchSize(1000);
+    csvFile = Files.createTempFile("people", ".csv");
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    Files.deleteIfExists(csvFile);
+    ((EmbeddedDatabase) ctx.getBean("dataSource")).shutdown();
+    ctx.close();
+  }
+
+  @Test
+  @DisplayName("load should insert every line in batches and report progress after each one")
+  public void load() throws IOException {
+    List<Person> people = writeGeneratedCsv();
+    List<Long> progress = new ArrayList<>();
+    classUnderTest.setProgressListener((rowsLoaded, bytesRead, totalBytes) -> {
+      progress.add(rowsLoaded);
+      assertTrue(bytesRead <= totalBytes);
+    });
+    long loaded = classUnderTest.load(csvFile);
+    assertAll(
+        () -> assertEquals(ROWS, loaded),
+        () -> assertEquals(Arrays.asList(1000L, 2000L, 2500L), progress),
+        () -> assertEquals(people, personDao.findAll()));
+  }
+
+  @Test
+  @DisplayName("importFile should load the same rows through Derby's bulk import")
+  public void importFile() throws IOException {
+    List<Person> people = writeGeneratedCsv();
+    long loaded = classUnderTest.importFile(csvFile);
+    assertAll(
+        () -> assertEquals(ROWS, loaded),
+        () -> assertEquals(people, personDao.findAll()));
+  }
+
+  @Test
+  @DisplayName("load should handle quoted values")
+  public void load_quoted() throws IOException {
+    Files.write(csvFile, Arrays.asList("\"O\"\"Anon\",\"Ag, Jr\",30,BLUE,\"FEMALE\""), StandardCharsets.UTF_8);
+    classUnderTest.load(csvFile);
+    Person person = personDao.findById(1L);
+    assertAll(
+        () -> assertEquals("O\"Anon", person.getLastName()),
+        () -> assertEquals("Ag, Jr", person.getFirstName()),
+        () -> assertEquals("BLUE", person.getEyeColor()),
+        () -> assertEquals("FEMALE", person.getGender()));
+  }
+
+  @Test
+  @DisplayName("load should stop at a bad line, keeping the batches before it")
+  public void load_badLine() throws IOException {
+    List<String> lines = new ArrayList<>(toCsv(new PersonBulkGenerator(5).stream(1500).collect(Collectors.toList())));
+    lines.set(1200, "Anon,Ag,thirty,BLUE,MALE");
+    Files.write(csvFile, lines, StandardCharsets.UTF_8);
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> classUnderTest.load(csvFile));
+    assertAll(
+        () -> assertTrue(e.getMessage().startsWith("Line 1201:"), e.getMessage()),
+        () -> assertEquals(1000, personDao.countAll()));
+  }
+
+  @Test
+  @DisplayName("load should load back a CSV file written by PersonExporter")
+  public void load_exported() throws IOException {
+    List<Person> people = writeExportedCsv();
+    long loaded = classUnderTest.load(csvFile);
+    assertAll(
+        () -> assertEquals(people.size(), loaded),
+        () -> assertEquals(people, personDao.findAll()));
+  }
+
+  @Test
+  @DisplayName("importFile should load back a CSV file written by PersonExporter")
+  public void importFile_exported() throws IOException {
+    List<Person> people = writeExportedCsv();
+    long loaded = classUnderTest.importFile(csvFile);
+    assertAll(
+        () -> assertEquals(people.size(), loaded),
+        () -> assertEquals(people, personDao.findAll()));
+  }
+
+  @Test
+  @DisplayName("load should read back a value PersonExporter split across lines")
+  public void load_exportedLineBreak() throws IOException {
+    List<Person> people = new ArrayList<>(writeExportedCsv(
+        new Person("Anon", "Ag\nJr, \"the\nsecond\"", 30, "BLUE", "MALE"),
+        new Person("Bazog", "Bog\r\n", 31, "BROWN", "FEMALE")));
+    long loaded = classUnderTest.load(csvFile);
+    // Line breaks come back as \n
+    people.set(people.size() - 1, new Person("Bazog", "Bog\n", 31, "BROWN", "FEMALE"));
+    assertAll(
+        () -> assertEquals(people.size(), loaded),
+        () -> assertEquals(people, personDao.findAll()));
+  }
+
+  @Test
+  @DisplayName("importFile should read back a value PersonExporter split across lines as it was")
+  public void importFile_exportedLineBreak() throws IOException {
+    List<Person> people = writeExportedCsv(new Person("Bazog", "Bog\r\nJr", 31, "BROWN", "FEMALE"));
+    long loaded = classUnderTest.importFile(csvFile);
+    assertAll(
+        () -> assertEquals(people.size(), loaded),
+        () -> assertEquals(people, personDao.findAll()));
+  }
+
+  @Test
+  @DisplayName("load should name the line a quoted value was left open on")
+  public void load_unterminatedQuote() throws IOException {
+    Files.write(csvFile, Arrays.asList("Anon,Ag,30,BLUE,MALE", "Bazog,\"Bog,31,BROWN,FEMALE", "Cain,Cy,32,BLUE,MALE"),
+        StandardCharsets.UTF_8);
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> classUnderTest.load(csvFile));
+    assertEquals("Line 2: unterminated quote", e.getMessage());
+  }
+
+  /**
+   * Adds some generated Person objects (and the specified ones), exports
+   * them and deletes them again, leaving the DB empty.
+   */
+  private List<Person> writeExportedCsv(Person... extraPeople) throws IOException {
+    List<Person> people = new PersonBulkGenerator(7).stream(100).collect(Collectors.toList());
+    people.addAll(Arrays.asList(extraPeople));
+    List<Person> ret = personDao.addAll(people);
+    new PersonExporter((DataSource) ctx.getBean("dataSource")).export(csvFile, Format.CSV, false);
+    assertEquals(PersonCsvLoader.EXPORT_HEADER, Files.readAllLines(csvFile, StandardCharsets.UTF_8).get(0));
+    personDao.deleteAllById(ret.stream().map(Person::getId).collect(Collectors.toList()));
+    assertEquals(0, personDao.countAll());
+    return ret;
+  }
+
+  private List<Person> writeGeneratedCsv() throws IOException {
+    List<Person> ret = new PersonBulkGenerator(9).stream(ROWS).collect(Collectors.toList());
+    List<String> lines = new ArrayList<>();
+    lines.add(PersonCsvLoader.HEADER);
+    lines.addAll(toCsv(ret));
+    Files.write(csvFile, lines, StandardCharsets.UTF_8);
+    return ret;
+  }
+
+  private static List<String> toCsv(List<Person> people) {
+    return people.stream()
+        .map(person -> String.join(",", person.getLastName(), person.getFirstName(),
+            String.valueOf(person.getAge()), person.getEyeColor(), person.getGender()))
+        .collect(Collectors.toList());
+  }
+
+}
@@ -21,10 +21,19 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.DynamicTest.dynamicTest;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import javax.sql.DataSource;
@@ -42,9 +51,16 @@ import org.junit.platform.runner.JUnitPlatform;
 import org.junit.runner.RunWith;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
 
+import com.makotojava.learn.junit.AgeStats;
+import com.makotojava.learn.junit.BulkResult;
+import com.makotojava.learn.junit.EyeColor;
+import com.makotojava.learn.junit.Gender;
 import com.makotojava.learn.junit.Person;
+import com.makotojava.learn.junit.PersonAttribute;
+import com.makotojava.learn.junit.PersonCriteria;
 import com.makotojava.learn.junit.PersonDaoBean;
 import com.makotojava.learn.junit.PersonGenerator;
 import com.makotojava.learn.junit.PersonTestEnum;
@@ -102,6 +118,55 @@ public class PersonDaoBeanTest extends AbstractBaseTest {
           () -> assertEquals(PersonTestEnum.values().length, people.size()));
     }
 
+    @Test
+    @DisplayName("Stream all objects in the database")
+    public void streamAll() {
+      assertNotNull(classUnderTest, "PersonDaoBean reference cannot be null.");
+      classUnderTest.setFetchSize(2);
+      try (Stream<Person> people = classUnderTest.streamAll()) {
+        assertEquals(Arrays.asList(PersonTestEnum.toPersonArray()), people.collect(Collectors.toList()));
+      }
+    }
+
+    @Test
+    @DisplayName("Visit all objects in the database")
+    public void forEach() {
+      assertNotNull(classUnderTest, "PersonDaoBean reference cannot be null.");
+      List<Person> people = new ArrayList<>();
+      classUnderTest.forEach(people::add);
+      assertEquals(Arrays.asList(PersonTestEnum.toPersonArray()), people);
+    }
+
+    @Test
+    @DisplayName("Page through all objects in the database")
+    public void findPage() {
+      assertNotNull(classUnderTest, "PersonDaoBean reference cannot be null.");
+      List<Person> firstPage = classUnderTest.findPage(null, 4);
+      List<Person> secondPage = classUnderTest.findPage(firstPage.get(firstPage.size() - 1).getId(), 4);
+      List<Person> thirdPage = classUnderTest.findPage(secondPage.get(secondPage.size() - 1).getId(), 4);
+      List<Person> people = new ArrayList<>(firstPage);
+      people.addAll(secondPage);
+      assertAll(
+          () -> assertEquals(4, firstPage.size()),
+          () -> assertEquals(2, secondPage.size()),
+          () -> assertTrue(thirdPage.isEmpty()),
+          () -> assertEquals(Arrays.asList(PersonTestEnum.toPersonArray()), people));
+    }
+
+    @Test
+    @DisplayName("Page through objects by a specific last name")
+    public void findAllByLastName_paged() {
+      assertNotNull(classUnderTest, "PersonDaoBean reference cannot be null.");
+      Person added = classUnderTest.add(new Person("Jaxl", "Ag", 30, PersonGenerator.BLUE, PersonGenerator.MALE));
+      List<Person> firstPage = classUnderTest.findAllByLastName("Jaxl", null, 1);
+      List<Person> secondPage = classUnderTest.findAllByLastName("Jaxl", firstPage.get(0).getId(), 1);
+      List<Person> thirdPage = classUnderTest.findAllByLastName("Jaxl", secondPage.get(0).getId(), 1);
+      assertAll(
+          () -> assertEquals(Long.valueOf(2L), firstPage.get(0).getId()),
+          () -> assertEquals(added.getId(), secondPage.get(0).getId()),
+          () -> assertTrue(thirdPage.isEmpty()));
+    }
+
     @Test
     @DisplayName("FindById - Old School")
     public void findById() {
@@ -133,6 +198,28 @@ public class PersonDaoBeanTest extends AbstractBaseTest {
           });
     }
 
+    @Test
+    @DisplayName("FindById should populate the creation date")
+    public void findById_whenCreated() {
+      assertNotNull(classUnderTest, "PersonDaoBean reference cannot be null.");
+      Person person = classUnderTest.findById(1L);
+      assertAll(
+          () -> assertEquals(Long.valueOf(1L), person.getId()),
+          () -> assertNotNull(person.getWhenCreated()));
+    }
+
+    @Test
+    @DisplayName("FindById should share one String per eye color and gender")
+    public void findById_canonicalValues() {
+      assertNotNull(classUnderTest, "PersonDaoBean reference cannot be null.");
+      Person person = classUnderTest.findById(1L);
+      assertAll(
+          () -> assertSame(PersonGenerator.BLUE, person.getEyeColor()),
+          () -> assertSame(PersonGenerator.MALE, person.getGender()),
+          () -> assertEquals(EyeColor.BLUE, person.getEyeColorValue()),
+          () -> assertEquals(Gender.MALE, person.getGenderValue()));
+    }
+
     /**
      * Create same tests as in findById, but create them as DynamicTest instances.
      * 
@@ -198,6 +285,40 @@ public class PersonDaoBeanTest extends AbstractBaseTest {
       assertNull(personAdded, "Add succeeded but should have failed.");
     }
 
+    @Test
+    @DisplayName("Adding a batch containing a duplicate Person should fail the whole batch")
+    public void addAll_duplicate() {
+      assertNotNull(classUnderTest, "PersonDaoBean reference cannot be null.");
+      List<Person> people = Arrays.asList(
+          new Person("Anon", "Ag", 30, PersonGenerator.BLUE, PersonGenerator.MALE),
+          new Person("Wragdhen", "Zelx", 28, PersonGenerator.BLUE, PersonGenerator.MALE));
+      List<Person> peopleAdded = classUnderTest.addAll(people);
+      assertAll(
+          () -> assertEquals(people.size(), peopleAdded.size()),
+          () -> assertNull(peopleAdded.get(0)),
+          () -> assertNull(peopleAdded.get(1)),
+          () -> assertEquals(PersonTestEnum.values().length, classUnderTest.findAll().size()));
+    }
+
+    @Test
+    @DisplayName("Adding a batch should hand back the right IDs when they are not contiguous")
+    public void addAll_nonContiguousIds() {
+      new JdbcTemplate((DataSource) ctx.getBean("dataSource"))
+          .execute("ALTER TABLE " + Person.TABLE_NAME + " ALTER COLUMN id SET INCREMENT BY 7");
+      // A batch of two and a batch of one
+      classUnderTest.setBatchSize(2);
+      List<Person> people = Arrays.asList(
+          new Person("Anon", "Ag", 30, PersonGenerator.BLUE, PersonGenerator.MALE),
+          new Person("Bazog", "Bog", 31, PersonGenerator.BROWN, PersonGenerator.FEMALE),
+          new Person("Anon", "Cain", 32, PersonGenerator.HAZEL, PersonGenerator.MALE));
+      List<Person> peopleAdded = classUnderTest.addAll(people);
+      assertAll(
+          () -> assertEquals(people, peopleAdded),
+          () -> assertEquals(7, peopleAdded.get(1).getId() - peopleAdded.get(0).getId()),
+          () -> assertEquals(7, peopleAdded.get(2).getId() - peopleAdded.get(1).getId()),
+          () -> peopleAdded.forEach(person -> assertEquals(person, classUnderTest.findById(person.getId()))));
+    }
+
     @Test
     @DisplayName("Update existing Person should succeed")
     @ExtendWith(RandomExistingPersonParameterResolver.class)
@@ -235,6 +356,232 @@ public class PersonDaoBeanTest extends AbstractBaseTest {
           person.getGender(), personDeleted);
     }
 
+    @Test
+    @DisplayName("findByCriteria should return the Person objects that meet every criterion")
+    public void findByCriteria() {
+      PersonCriteria females30to40 = PersonCriteria.ALL.gender(Gender.FEMALE).ageBetween(30, 40);
+      assertAll(
+          () -> assertEquals(PersonTestEnum.values().length, classUnderTest.findByCriteria(PersonCriteria.ALL).size()),
+          () -> assertEquals(Arrays.asList(3L, 6L), ids(classUnderTest.findByCriteria(females30to40))),
+          () -> assertEquals(Arrays.asList(6L), ids(classUnderTest.findByCriteria(females30to40.eyeColor("BLUE")))),
+          () -> assertEquals(Arrays.asList(2L),
+              ids(classUnderTest.findByCriteria(PersonCriteria.ALL.lastName("Jaxl").gender(Gender.MALE)))),
+          () -> assertTrue(classUnderTest.findByCriteria(females30to40.eyeColor(EyeColor.HAZEL)).isEmpty()));
+    }
+
+    @Test
+    @DisplayName("findByCriteria should agree with PersonCriteria.matches() for every combination of criteria")
+    public void findByCriteria_allShapes() {
+      List<Person> everyone = classUnderTest.findAll();
+      for (int shape = 0; shape < 16; shape++) {
+        PersonCriteria criteria = PersonCriteria.ALL;
+        criteria = (shape & 1) == 0 ? criteria : criteria.lastName("Naen");
+        criteria = (shape & 2) == 0 ? criteria : criteria.ageBetween(30, 40);
+        criteria = (shape & 4) == 0 ? criteria : criteria.eyeColor(EyeColor.BLUE);
+        criteria = (shape & 8) == 0 ? criteria : criteria.gender(Gender.FEMALE);
+        List<Person> expected = everyone.stream().filter(criteria::matches).collect(Collectors.toList());
+        assertEquals(ids(expected), ids(classUnderTest.findByCriteria(criteria)), criteria.toString());
+      }
+    }
+
+    @Test
+    @DisplayName("findByCriteria with a limit should page through the matches in ID order")
+    public void findByCriteria_paged() {
+      PersonCriteria females = PersonCriteria.ALL.gender(Gender.FEMALE);
+      List<Person> firstPage = classUnderTest.findByCriteria(females, null, 2);
+      assertAll(
+          () -> assertEquals(Arrays.asList(3L, 4L), ids(firstPage)),
+          () -> assertEquals(Arrays.asList(6L), ids(classUnderTest.findByCriteria(females, 4L, 2))),
+          () -> assertTrue(classUnderTest.findByCriteria(females, 6L, 2).isEmpty()));
+    }
+
+    @Test
+    @DisplayName("existsById and the count methods should agree with the rows")
+    public void existsAndCount() {
+      assertAll(
+          () -> assertTrue(classUnderTest.existsById(1L)),
+          () -> assertFalse(classUnderTest.existsById(999L)),
+          () -> assertEquals(PersonTestEnum.values().length, classUnderTest.countAll()),
+          () -> assertEquals(1, classUnderTest.countByLastName("Jaxl")),
+          () -> assertEquals(0, classUnderTest.countByLastName("Anon")));
+    }
+
+    @Test
+    @DisplayName("findIdByName and findIdsByName should find IDs by last and first name")
+    public void findIdByName() {
+      Person person = classUnderTest.findById(2L);
+      List<Long> ids = classUnderTest.findIdsByName(Arrays.asList(person,
+          new Person("Anon", person.getFirstName(), 30, PersonGenerator.BLUE, PersonGenerator.MALE),
+          classUnderTest.findById(1L)));
+      assertAll(
+          () -> assertEquals(Long.valueOf(2L),
+              classUnderTest.findIdByName(person.getLastName(), person.getFirstName())),
+          () -> assertNull(classUnderTest.findIdByName(person.getLastName(), "Anon")),
+          () -> assertEquals(Arrays.asList(2L, null, 1L), ids),
+          () -> assertTrue(classUnderTest.findIdsByName(Collections.emptyList()).isEmpty()));
+    }
+
+    @Test
+    @DisplayName("findAllById should return the Person objects found, once each, in input order")
+    public void findAllById() {
+      Map<Long, Person> found = classUnderTest.findAllById(Arrays.asList(3L, 1L, 999L, 1L, null));
+      assertAll(
+          () -> assertEquals(Arrays.asList(3L, 1L), new ArrayList<>(found.keySet())),
+          () -> assertEquals("Kath", found.get(3L).getLastName()),
+          () -> assertEquals("Wragdhen", found.get(1L).getLastName()));
+    }
+
+    @Test
+    @DisplayName("findAllById should give the same answer with small IN lists run in parallel")
+    public void findAllById_chunkedInParallel() {
+      List<Long> ids = Arrays.asList(6L, 5L, 4L, 3L, 2L, 1L, 999L);
+      Map<Long, Person> expected = classUnderTest.findAllById(ids);
+      ExecutorService executor = Executors.newFixedThreadPool(2);
+      try {
+        classUnderTest.setInListSize(2);
+        classUnderTest.setExecutor(executor);
+        Map<Long, Person> found = classUnderTest.findAllById(ids);
+        assertAll(
+            () -> assertEquals(Arrays.asList(6L, 5L, 4L, 3L, 2L, 1L), new ArrayList<>(found.keySet())),
+            () -> assertEquals(expected, found));
+      } finally {
+        executor.shutdown();
+      }
+    }
+
+    @Test
+    @DisplayName("countBy should count the Person objects with each value")
+    public void countBy() {
+      Map<String, Integer> byGender = classUnderTest.countBy(PersonAttribute.GENDER);
+      assertAll(
+          () -> assertEquals(Arrays.asList("FEMALE", "MALE", "UNKNOWN"), new ArrayList<>(byGender.keySet())),
+          () -> assertEquals(Arrays.asList(3, 2, 1), new ArrayList<>(byGender.values())));
+      for (PersonAttribute attribute : PersonAttribute.values()) {
+        Map<String, Integer> expected = new TreeMap<>();
+        for (Person person : classUnderTest.findAll()) {
+          expected.merge(attributeValue(attribute, person), 1, Integer::sum);
+        }
+        assertEquals(expected, classUnderTest.countBy(attribute), attribute.name());
+      }
+    }
+
+    @Test
+    @DisplayName("ageStatsBy should work out the age statistics for each value")
+    public void ageStatsBy() {
+      Map<String, AgeStats> byGender = classUnderTest.ageStatsBy(PersonAttribute.GENDER);
+      AgeStats females = byGender.get("FEMALE");
+      assertAll(
+          () -> assertEquals(3, byGender.size()),
+          () -> assertEquals(3, females.getCount()),
+          () -> assertEquals(18, females.getMinAge()),
+          () -> assertEquals(40, females.getMaxAge()),
+          () -> assertEquals(31.0, females.getAverageAge(), 0.001),
+          () -> assertEquals(11, byGender.get("UNKNOWN").getSumOfAges()));
+    }
+
+    private String attributeValue(PersonAttribute attribute, Person person) {
+      switch (attribute) {
+      case LAST_NAME:
+        return person.getLastName();
+      case EYE_COLOR:
+        return person.getEyeColor();
+      default:
+        return person.getGender();
+      }
+    }
+
+    private List<Long> ids(List<Person> people) {
+      return people.stream().map(Person::getId).sorted().collect(Collectors.toList());
+    }
+
+    @Test
+    @DisplayName("upsert of an existing name should update it in place")
+    public void upsert_existing() {
+      Person person = new Person("Wragdhen", "Zelx", 38, PersonGenerator.GOLD, PersonGenerator.MALE);
+      assertTrue(classUnderTest.upsert(person));
+      Person upserted = classUnderTest.findById(1L);
+      assertAll(
+          () -> assertEquals(38, upserted.getAge()),
+          () -> assertEquals(PersonGenerator.GOLD, upserted.getEyeColor()),
+          () -> assertEquals(PersonTestEnum.values().length, classUnderTest.findAll().size()));
+    }
+
+    @Test
+    @DisplayName("upsertAll should update existing names and add new ones")
+    public void upsertAll() {
+      classUnderTest.setBatchSize(2);
+      List<Person> people = Arrays.asList(
+          new Person("Wragdhen", "Zelx", 38, PersonGenerator.GOLD, PersonGenerator.MALE),
+          new Person("Jaxl", "Lar", 41, PersonGenerator.BROWN, PersonGenerator.MALE),
+          new Person("Anon", "Ag", 30, PersonGenerator.BLUE, PersonGenerator.FEMALE));
+      List<Boolean> results = classUnderTest.upsertAll(people);
+      List<Person> added = classUnderTest.findAllByLastName("Anon");
+      assertAll(
+          () -> assertEquals(Arrays.asList(true, true, true), results),
+          () -> assertEquals(38, classUnderTest.findById(1L).getAge()),
+          () -> assertEquals(41, classUnderTest.findById(2L).getAge()),
+          () -> assertEquals(1, added.size()),
+          () -> assertNotNull(added.get(0).getWhenCreated()),
+          () -> assertEquals(PersonTestEnum.values().length + 1, classUnderTest.findAll().size()));
+    }
+
+    @Test
+    @DisplayName("updateAll should report the outcome for each ID")
+    public void updateAll() {
+      classUnderTest.setBatchSize(2);
+      List<Person> people = new ArrayList<>();
+      for (long id = 1; id <= 3; id++) {
+        Person person = classUnderTest.findById(id);
+        people.add(new Person(person.getLastName(), person.getFirstName(), person.getAge() + 10,
+            person.getEyeColor(), person.getGender()).withId(id));
+      }
+      people.add(new Person("Nobody", "Here", 30, PersonGenerator.BLUE, PersonGenerator.MALE).withId(999L));
+      BulkResult result = classUnderTest.updateAll(people);
+      assertAll(
+          () -> assertEquals(3, result.count(BulkResult.Outcome.SUCCEEDED)),
+          () -> assertEquals(Arrays.asList(999L), result.getIds(BulkResult.Outcome.NOT_FOUND)),
+          () -> assertEquals(people.get(0).getAge(), classUnderTest.findById(1L).getAge()),
+          () -> assertEquals(people.get(2).getAge(), classUnderTest.findById(3L).getAge()));
+    }
+
+    @Test
+    @DisplayName("updateAll should roll back a batch that causes a duplicate")
+    public void updateAll_causesDuplicate() {
+      Person before = classUnderTest.findById(3L);
+      Person older = new Person(before.getLastName(), before.getFirstName(), before.getAge() + 10,
+          before.getEyeColor(), before.getGender()).withId(3L);
+      // This Person is actually ID 2, so updating ID 1 to match it is a duplicate
+      Person duplicate = new Person("Jaxl", "Lar", 21, PersonGenerator.BROWN, PersonGenerator.MALE).withId(1L);
+      BulkResult result = classUnderTest.updateAll(Arrays.asList(older, duplicate));
+      assertAll(
+          () -> assertEquals(Arrays.asList(3L, 1L), result.getIds(BulkResult.Outcome.FAILED)),
+          () -> assertFalse(result.isAllSucceeded()),
+          () -> assertEquals(before.getAge(), classUnderTest.findById(3L).getAge()));
+    }
+
+    @Test
+    @DisplayName("deleteAllById should delete existing IDs and report missing ones")
+    public void deleteAllById() {
+      classUnderTest.setBatchSize(2);
+      BulkResult result = classUnderTest.deleteAllById(Arrays.asList(1L, 2L, 999L));
+      assertAll(
+          () -> assertEquals(Arrays.asList(1L, 2L), result.getIds(BulkResult.Outcome.SUCCEEDED)),
+          () -> assertEquals(BulkResult.Outcome.NOT_FOUND, result.getOutcome(999L)),
+          () -> assertNull(classUnderTest.findById(1L)),
+          () -> assertEquals(PersonTestEnum.values().length - 2, classUnderTest.findAll().size()));
+    }
+
+    @Test
+    @DisplayName("deleteAllById should ignore null and duplicate IDs")
+    public void deleteAllById_nullAndDuplicateIds() {
+      BulkResult result = classUnderTest.deleteAllById(Arrays.asList(1L, null, 1L, 2L));
+      assertAll(
+          () -> assertEquals(Arrays.asList(1L, 2L), result.getIds(BulkResult.Outcome.SUCCEEDED)),
+          () -> assertEquals(0, result.count(BulkResult.Outcome.NOT_FOUND)),
+          () -> assertEquals(0, result.count(BulkResult.Outcome.FAILED)),
+          () -> assertEquals(PersonTestEnum.values().length - 2, classUnderTest.findAll().size()));
+    }
+
   }
 
   @Nested
@@ -270,6 +617,38 @@ public class PersonDaoBeanTest extends AbstractBaseTest {
           () -> assertEquals(0, people.size()));
     }
 
+    @Test
+    @DisplayName("findAllById should return an empty map")
+    public void findAllById_WithEmptyDatabase() {
+      assertTrue(classUnderTest.findAllById(Arrays.asList(1L, 2L)).isEmpty());
+    }
+
+    @Test
+    @DisplayName("streamAll should return empty stream")
+    public void streamAll_WithEmptyDatabase() {
+      assertNotNull(classUnderTest, "PersonDaoBean reference cannot be null.");
+      try (Stream<Person> people = classUnderTest.streamAll()) {
+        assertEquals(0, people.count());
+      }
+    }
+
+    @Test
+    @DisplayName("addAll should add every Person and return IDs in input order")
+    public void addAll_WithEmptyDatabase() {
+      assertNotNull(classUnderTest, "PersonDaoBean reference cannot be null.");
+      classUnderTest.setBatchSize(4);
+      List<Person> people = Arrays.asList(PersonTestEnum.toPersonArray());
+      List<Person> peopleAdded = classUnderTest.addAll(people.stream());
+      assertEquals(people.size(), peopleAdded.size());
+      for (int aa = 0; aa < people.size(); aa++) {
+        Person person = people.get(aa);
+        Person personAdded = peopleAdded.get(aa);
+        assertNotNull(personAdded, "Add failed but should have succeeded");
+        performPersonAssertions(person.getLastName(), person.getFirstName(), person.getAge(), person.getEyeColor(),
+            person.getGender(), classUnderTest.findById(personAdded.getId()));
+      }
+    }
+
     @Test
     @DisplayName("Update should fail because object does not exist")
     public void update_WithEmptyDatabase() {
@@ -291,6 +670,43 @@ public class PersonDaoBeanTest extends AbstractBaseTest {
       assertNull(personDeleted, "Delete succeeded but should have failed.");
     }
 
+    @Test
+    @DisplayName("upsert should add a Person that does not exist")
+    public void upsert_WithEmptyDatabase() {
+      Person person = new Person("Wragdhen", "Zelx", 28, PersonGenerator.BLUE, PersonGenerator.MALE);
+      assertTrue(classUnderTest.upsert(person));
+      List<Person> people = classUnderTest.findAll();
+      assertEquals(1, people.size());
+      performPersonAssertions(person.getLastName(), person.getFirstName(), person.getAge(), person.getEyeColor(),
+          person.getGender(), people.get(0));
+    }
+
+    @Test
+    @DisplayName("Nothing should exist and every count should be zero")
+    public void existsAndCount_WithEmptyDatabase() {
+      assertAll(
+          () -> assertFalse(classUnderTest.existsById(1L)),
+          () -> assertEquals(0, classUnderTest.countAll()),
+          () -> assertEquals(0, classUnderTest.countByLastName("Jaxl")));
+    }
+
+    @Test
+    @DisplayName("Aggregates should be empty")
+    public void aggregates_WithEmptyDatabase() {
+      assertAll(
+          () -> assertTrue(classUnderTest.countBy(PersonAttribute.EYE_COLOR).isEmpty()),
+          () -> assertTrue(classUnderTest.ageStatsBy(PersonAttribute.EYE_COLOR).isEmpty()));
+    }
+
+    @Test
+    @DisplayName("deleteAllById should report every ID as not found")
+    public void deleteAllById_WithEmptyDatabase() {
+      BulkResult result = classUnderTest.deleteAllById(Arrays.asList(1L, 2L));
+      assertAll(
+          () -> assertEquals(2, result.count(BulkResult.Outcome.NOT_FOUND)),
+          () -> assertEquals(0, result.count(BulkResult.Outcome.SUCCEEDED)));
+    }
+
   }
 
 }
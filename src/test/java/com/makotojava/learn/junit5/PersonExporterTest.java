@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.makotojava.learn.junit5;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import com.makotojava.learn.junit.Person;
+import com.makotojava.learn.junit.PersonDaoBean;
+import com.makotojava.learn.junit.PersonExporter;
+import com.makotojava.learn.junit.PersonExporter.Format;
+import com.makotojava.learn.junit.PersonTestEnum;
+import com.makotojava.learn.junit.TestSpringConfiguration;
+
+/**
+ * Test class for PersonExporter.
+ *
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing PersonExporter")
+@RunWith(JUnitPlatform.class)
+public class PersonExporterTest extends AbstractBaseTest {
+
+  private AnnotationConfigApplicationContext ctx;
+
+  private PersonDaoBean personDao;
+
+  private PersonExporter classUnderTest;
+
+  @BeforeEach
+  void setUp() {
+    ctx = new AnnotationConfigApplicationContext(TestSpringConfiguration.class);
+    personDao = ctx.getBean(PersonDaoBean.class);
+    classUnderTest = new PersonExporter((DataSource) ctx.getBean("dataSource"));
+  }
+
+  @AfterEach
+  void tearDown() {
+    ((EmbeddedDatabase) ctx.getBean("dataSource")).shutdown();
+    ctx.close();
+  }
+
+  @Test
+  @DisplayName("CSV export should write a header and one line per row")
+  public void export_csv() throws IOException {
+    List<String> lines = export(Format.CSV);
+    Person first = personDao.findById(1L);
+    assertAll(
+        () -> assertEquals(PersonTestEnum.values().length + 1, lines.size()),
+        () -> assertEquals("id,when_created,last_name,first_name,age,eye_color,gender", lines.get(0)),
+        () -> assertEquals("1," + first.getWhenCreated() + ",Wragdhen,Zelx,28,BLUE,MALE", lines.get(1)),
+        () -> assertTrue(lines.get(6).startsWith("6,")));
+  }
+
+  @Test
+  @DisplayName("JSON lines export should write one JSON object per row")
+  public void export_jsonLines() throws IOException {
+    List<String> lines = export(Format.JSON_LINES);
+    Person first = personDao.findById(1L);
+    assertAll(
+        () -> assertEquals(PersonTestEnum.values().length, lines.size()),
+        () -> assertEquals("{\"id\":1,\"when_created\":\"" + first.getWhenCreated()
+            + "\",\"last_name\":\"Wragdhen\",\"first_name\":\"Zelx\",\"age\":28,\"eye_color\":\"BLUE\""
+            + ",\"gender\":\"MALE\"}", lines.get(0)));
+  }
+
+  @Test
+  @DisplayName("Export should quote and escape values that need it")
+  public void export_escaping() throws IOException {
+    personDao.add(new Person("O\"Anon", "Ag, Jr", 30, "BLUE", "MALE"));
+    List<String> csv = export(Format.CSV);
+    List<String> json = export(Format.JSON_LINES);
+    assertAll(
+        () -> assertTrue(csv.get(csv.size() - 1).contains(",\"O\"\"Anon\",\"Ag, Jr\",30,"), csv.toString()),
+        () -> assertTrue(json.get(json.size() - 1).contains("\"last_name\":\"O\\\"Anon\",\"first_name\":\"Ag, Jr\""),
+            json.toString()));
+  }
+
+  @Test
+  @DisplayName("Gzipped file export should hold the same bytes as the plain export")
+  public void export_gzipFile() throws IOException {
+    Path file = Files.createTempFile("people", ".jsonl.gz");
+    try {
+      long rows = classUnderTest.export(file, Format.JSON_LINES, true);
+      ByteArrayOutputStream plain = new ByteArrayOutputStream();
+      classUnderTest.export(plain, Format.JSON_LINES);
+      ByteArrayOutputStream unzipped = new ByteArrayOutputStream();
+      try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          unzipped.write(buffer, 0, read);
+        }
+      }
+      assertAll(
+          () -> assertEquals(PersonTestEnum.values().length, rows),
+          () -> assertArrayEquals(plain.toByteArray(), unzipped.toByteArray()));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private List<String> export(Format format) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    classUnderTest.export(out, format);
+    return Arrays.asList(new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n"));
+  }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import com.makotojava.learn.junit.EyeColor;
+import com.makotojava.learn.junit.Gender;
+import com.makotojava.learn.junit.Person;
+import com.makotojava.learn.junit.PersonDaoBean;
+import com.makotojava.learn.junit.PersonStore;
+import com.makotojava.learn.junit.PersonStore.Filter;
+import com.makotojava.learn.junit.PersonTestEnum;
+import com.makotojava.learn.junit.TestSpringConfiguration;
+
+/**
+ * Test class for PersonStore. Expected values come from PersonTestEnum.
+ * 
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing PersonStore")
+@RunWith(JUnitPlatform.class)
+public class PersonStoreTest extends AbstractBaseTest {
+
+  private ApplicationContext ctx;
+
+  private PersonStore classUnderTest;
+
+  @BeforeEach
+  void setUp() {
+    ctx = new AnnotationConfigApplicationContext(TestSpringConfiguration.class);
+    classUnderTest = PersonStore.load(ctx.getBean(PersonDaoBean.class));
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    DataSource dataSource = (DataSource) ctx.getBean("dataSource");
+    if (dataSource instanceof EmbeddedDatabase) {
+      ((EmbeddedDatabase) dataSource).shutdown();
+    }
+  }
+
+  @Test
+  @DisplayName("load should copy every Person in the database")
+  public void load() {
+    assertEquals(PersonTestEnum.values().length, classUnderTest.size());
+    for (int row = 0; row < classUnderTest.size(); row++) {
+      Person expected = PersonTestEnum.values()[row].getPerson();
+      Person person = classUnderTest.getPerson(row);
+      assertEquals(expected.getId(), person.getId());
+      assertNotNull(person.getWhenCreated());
+      performPersonAssertions(expected.getLastName(), expected.getFirstName(), expected.getAge(),
+          expected.getEyeColor(), expected.getGender(), person);
+    }
+  }
+
+  @Test
+  @DisplayName("count should apply every criterion")
+  public void count() {
+    assertAll(
+        () -> assertEquals(6, classUnderTest.count(Filter.ALL)),
+        () -> assertEquals(3, classUnderTest.count(Filter.ALL.ageBetween(20, 35))),
+        () -> assertEquals(2, classUnderTest.count(Filter.ALL.eyeColor(EyeColor.BROWN))),
+        () -> assertEquals(1, classUnderTest.count(Filter.ALL.gender(Gender.FEMALE).eyeColor(EyeColor.BROWN))),
+        () -> assertEquals(1, classUnderTest.count(Filter.ALL.gender(Gender.FEMALE).ageBetween(36, 50))),
+        () -> assertEquals(0, classUnderTest.count(Filter.ALL.eyeColor(EyeColor.BLACK))));
+  }
+
+  @Test
+  @DisplayName("Aggregations should count matching rows by attribute")
+  public void aggregations() {
+    int[] histogram = classUnderTest.ageHistogram(Filter.ALL.gender(Gender.FEMALE));
+    Map<String, Integer> byEyeColor = classUnderTest.countByEyeColor(Filter.ALL);
+    Map<String, Integer> byGender = classUnderTest.countByGender(Filter.ALL.eyeColor(EyeColor.BLUE));
+    assertAll(
+        () -> assertEquals(41, histogram.length),
+        () -> assertEquals(1, histogram[18]),
+        () -> assertEquals(1, histogram[35]),
+        () -> assertEquals(1, histogram[40]),
+        () -> assertEquals(0, histogram[28]),
+        () -> assertEquals(Integer.valueOf(2), byEyeColor.get(EyeColor.BLUE.name())),
+        () -> assertEquals(Integer.valueOf(2), byEyeColor.get(EyeColor.BROWN.name())),
+        () -> assertEquals(Integer.valueOf(1), byEyeColor.get(EyeColor.HAZEL.name())),
+        () -> assertEquals(Integer.valueOf(1), byGender.get(Gender.MALE.name())),
+        () -> assertEquals(Integer.valueOf(1), byGender.get(Gender.FEMALE.name())));
+  }
+
+  @Test
+  @DisplayName("Adding to the Builder after build should not change the PersonStore it built")
+  public void builder_reuse() {
+    PersonStore.Builder builder = new PersonStore.Builder()
+        .add(new Person("Anon", "Ag", 30, EyeColor.BLUE.name(), Gender.MALE.name()).withId(1L));
+    PersonStore store = builder.build();
+    builder.add(new Person("Nemo", "Ng", 40, EyeColor.HAZEL.name(), Gender.FEMALE.name()).withId(2L));
+    PersonStore bigger = builder.build();
+    assertAll(
+        () -> assertEquals(1, store.size()),
+        () -> assertEquals(0, store.count(Filter.ALL.eyeColor(EyeColor.HAZEL))),
+        () -> assertEquals(1, store.countByEyeColor(Filter.ALL).size()),
+        () -> assertEquals(2, bigger.size()),
+        () -> assertEquals(1, bigger.count(Filter.ALL.eyeColor(EyeColor.HAZEL))),
+        () -> assertNull(store.getWhenCreated(0)));
+  }
+
+  @Test
+  @DisplayName("Builder should reject a negative age")
+  public void builder_negativeAge() {
+    PersonStore.Builder builder = new PersonStore.Builder();
+    assertThrows(IllegalArgumentException.class,
+        () -> builder.add(new Person("Anon", "Ag", -1, EyeColor.BLUE.name(), Gender.MALE.name())));
+    assertEquals(0, builder.build().size());
+  }
+
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import com.makotojava.learn.junit.Person;
+import com.makotojava.learn.junit.PersonDaoBean;
+import com.makotojava.learn.junit.PersonGenerator;
+import com.makotojava.learn.junit.PersonTestEnum;
+import com.makotojava.learn.junit.PersonWriteBehindBuffer;
+import com.makotojava.learn.junit.TestSpringConfiguration;
+
+/**
+ * Test class for PersonWriteBehindBuffer.
+ * 
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing PersonWriteBehindBuffer")
+@RunWith(JUnitPlatform.class)
+public class PersonWriteBehindBufferTest extends AbstractBaseTest {
+
+  private AnnotationConfigApplicationContext ctx;
+
+  private PersonDaoBean personDaoBean;
+
+  @BeforeEach
+  void setUp() {
+    ctx = new AnnotationConfigApplicationContext(TestSpringConfiguration.class);
+    personDaoBean = ctx.getBean(PersonDaoBean.class);
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    DataSource dataSource = (DataSource) ctx.getBean("dataSource");
+    if (dataSource instanceof EmbeddedDatabase) {
+      ((EmbeddedDatabase) dataSource).shutdown();
+    }
+    ctx.close();
+  }
+
+  /**
+   * A buffer that only flushes when told to (or when it fills up).
+   */
+  private PersonWriteBehindBuffer manualBuffer(int maxBuffered) {
+    return new PersonWriteBehindBuffer(personDaoBean, maxBuffered, 1, TimeUnit.HOURS);
+  }
+
+  @Test
+  @DisplayName("Adds should not reach the database until flushed")
+  public void add_flush() throws Exception {
+    try (PersonWriteBehindBuffer classUnderTest = manualBuffer(100)) {
+      CompletableFuture<Person> first = classUnderTest.add(PersonGenerator.createPerson());
+      CompletableFuture<Person> second = classUnderTest.add(PersonGenerator.createPerson());
+      assertAll(
+          () -> assertFalse(first.isDone()),
+          () -> assertEquals(2, classUnderTest.size()),
+          () -> assertEquals(PersonTestEnum.values().length, personDaoBean.findAll().size()));
+      classUnderTest.flush();
+      assertAll(
+          () -> assertNotNull(first.get().getId()),
+          () -> assertEquals(first.get().getId() + 1, second.get().getId().longValue()),
+          () -> assertEquals(0, classUnderTest.size()),
+          () -> assertEquals(1, classUnderTest.getFlushCount()),
+          () -> assertEquals(PersonTestEnum.values().length + 2, personDaoBean.findAll().size()));
+    }
+  }
+
+  @Test
+  @DisplayName("Writes to the same ID should be coalesced")
+  public void coalesce() throws Exception {
+    try (PersonWriteBehindBuffer classUnderTest = manualBuffer(100)) {
+      Person person = personDaoBean.findById(1L);
+      Person older = new Person(person.getLastName(), person.getFirstName(), person.getAge() + 1,
+          person.getEyeColor(), person.getGender()).withId(1L);
+      Person oldest = new Person(person.getLastName(), person.getFirstName(), person.getAge() + 2,
+          person.getEyeColor(), person.getGender()).withId(1L);
+      CompletableFuture<Boolean> firstUpdate = classUnderTest.update(older);
+      CompletableFuture<Boolean> secondUpdate = classUnderTest.update(oldest);
+      Person doomed = personDaoBean.findById(2L);
+      CompletableFuture<Boolean> doomedUpdate = classUnderTest.update(doomed);
+      CompletableFuture<Person> delete = classUnderTest.delete(doomed);
+      CompletableFuture<Boolean> updateAfterDelete = classUnderTest.update(doomed);
+      assertAll(
+          () -> assertEquals(2, classUnderTest.size()),
+          () -> assertFalse(updateAfterDelete.get()));
+      classUnderTest.flush();
+      assertAll(
+          () -> assertTrue(firstUpdate.get()),
+          () -> assertTrue(secondUpdate.get()),
+          () -> assertEquals(oldest.getAge(), personDaoBean.findById(1L).getAge()),
+          () -> assertFalse(doomedUpdate.get()),
+          () -> assertEquals(doomed, delete.get()),
+          () -> assertNull(personDaoBean.findById(2L)));
+    }
+  }
+
+  @Test
+  @DisplayName("Writes should reach the database in the order they were made")
+  public void order() throws Exception {
+    try (PersonWriteBehindBuffer classUnderTest = manualBuffer(100)) {
+      // Each add takes the name a delete or update before it frees up
+      Person deleted = personDaoBean.findById(1L);
+      Person renamed = personDaoBean.findById(2L);
+      CompletableFuture<Person> delete = classUnderTest.delete(deleted);
+      CompletableFuture<Person> addDeletedName = classUnderTest.add(new Person(deleted.getLastName(),
+          deleted.getFirstName(), 30, PersonGenerator.BLUE, PersonGenerator.MALE));
+      CompletableFuture<Boolean> rename = classUnderTest.update(new Person("Renamed", renamed.getFirstName(),
+          renamed.getAge(), renamed.getEyeColor(), renamed.getGender()).withId(renamed.getId()));
+      CompletableFuture<Person> addRenamedName = classUnderTest.add(new Person(renamed.getLastName(),
+          renamed.getFirstName(), 30, PersonGenerator.BLUE, PersonGenerator.MALE));
+      classUnderTest.flush();
+      assertAll(
+          () -> assertEquals(deleted, delete.get()),
+          () -> assertNotNull(addDeletedName.get().getId()),
+          () -> assertTrue(rename.get()),
+          () -> assertNotNull(addRenamedName.get().getId()),
+          () -> assertEquals(0, classUnderTest.getFailedCount()),
+          () -> assertEquals("Renamed", personDaoBean.findById(2L).getLastName()));
+    }
+  }
+
+  @Test
+  @DisplayName("A second write to an ID should not move it past an add queued in between")
+  public void order_rewriteAfterAdd() throws Exception {
+    try (PersonWriteBehindBuffer classUnderTest = manualBuffer(100)) {
+      // The add takes the name the rename frees up, so the rename has to be written first
+      Person person = personDaoBean.findById(1L);
+      CompletableFuture<Boolean> rename = classUnderTest.update(new Person("Renamed", person.getFirstName(),
+          person.getAge(), person.getEyeColor(), person.getGender()).withId(1L));
+      CompletableFuture<Person> addOldName = classUnderTest.add(new Person(person.getLastName(),
+          person.getFirstName(), 30, PersonGenerator.BLUE, PersonGenerator.MALE));
+      CompletableFuture<Boolean> birthday = classUnderTest.update(new Person("Renamed", person.getFirstName(),
+          person.getAge() + 1, person.getEyeColor(), person.getGender()).withId(1L));
+      // The same again, with a delete in place of the second update
+      Person deleted = personDaoBean.findById(2L);
+      CompletableFuture<Boolean> renameDeleted = classUnderTest.update(new Person("Renamed", deleted.getFirstName(),
+          deleted.getAge(), deleted.getEyeColor(), deleted.getGender()).withId(2L));
+      CompletableFuture<Person> addDeletedOldName = classUnderTest.add(new Person(deleted.getLastName(),
+          deleted.getFirstName(), 30, PersonGenerator.BLUE, PersonGenerator.MALE));
+      CompletableFuture<Person> delete = classUnderTest.delete(deleted);
+      assertEquals(6, classUnderTest.size());
+      classUnderTest.flush();
+      assertAll(
+          () -> assertTrue(rename.get()),
+          () -> assertNotNull(addOldName.get().getId()),
+          () -> assertTrue(birthday.get()),
+          () -> assertTrue(renameDeleted.get()),
+          () -> assertNotNull(addDeletedOldName.get().getId()),
+          () -> assertEquals(deleted, delete.get()),
+          () -> assertEquals(0, classUnderTest.getFailedCount()),
+          () -> assertEquals("Renamed", personDaoBean.findById(1L).getLastName()),
+          () -> assertEquals(person.getAge() + 1, personDaoBean.findById(1L).getAge()),
+          () -> assertNull(personDaoBean.findById(2L)));
+    }
+  }
+
+  @Test
+  @DisplayName("Filling the buffer should flush it")
+  public void maxBuffered() throws Exception {
+    try (PersonWriteBehindBuffer classUnderTest = manualBuffer(2)) {
+      CompletableFuture<Person> first = classUnderTest.add(PersonGenerator.createPerson());
+      assertFalse(first.isDone());
+      CompletableFuture<Person> second = classUnderTest.add(PersonGenerator.createPerson());
+      assertAll(
+          () -> assertTrue(first.isDone()),
+          () -> assertTrue(second.isDone()),
+          () -> assertEquals(0, classUnderTest.size()));
+    }
+  }
+
+  @Test
+  @DisplayName("Buffer should be flushed in the background")
+  public void flushInterval() throws Exception {
+    try (PersonWriteBehindBuffer classUnderTest =
+        new PersonWriteBehindBuffer(personDaoBean, 100, 50, TimeUnit.MILLISECONDS)) {
+      Person added = classUnderTest.add(PersonGenerator.createPerson()).get(10, TimeUnit.SECONDS);
+      assertNotNull(added.getId());
+    }
+  }
+
+  @Test
+  @DisplayName("A failed batch should fail the futures of its writes")
+  public void failure() throws Exception {
+    try (PersonWriteBehindBuffer classUnderTest = manualBuffer(100)) {
+      // This Person is actually ID 2, so updating ID 1 to match it is a duplicate
+      Person duplicate = new Person("Jaxl", "Lar", 21, PersonGenerator.BROWN, PersonGenerator.MALE).withId(1L);
+      CompletableFuture<Boolean> update = classUnderTest.update(duplicate);
+      CompletableFuture<Person> deleteMissing = classUnderTest.delete(
+          new Person("Nobody", "Here", 30, PersonGenerator.BLUE, PersonGenerator.MALE).withId(999L));
+      classUnderTest.flush();
+      assertAll(
+          () -> assertThrows(ExecutionException.class, () -> update.get()),
+          () -> assertNull(deleteMissing.get()),
+          () -> assertEquals(1, classUnderTest.getFailedCount()));
+    }
+  }
+
+  @Test
+  @DisplayName("close should flush and refuse further writes")
+  public void close() throws Exception {
+    PersonWriteBehindBuffer classUnderTest = manualBuffer(100);
+    CompletableFuture<Person> added = classUnderTest.add(PersonGenerator.createPerson());
+    classUnderTest.close();
+    assertAll(
+        () -> assertNotNull(added.get().getId()),
+        () -> assertThrows(IllegalStateException.class, () -> classUnderTest.add(PersonGenerator.createPerson())));
+  }
+
+}
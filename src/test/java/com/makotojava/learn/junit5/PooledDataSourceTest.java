@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import com.makotojava.learn.junit.AbstractSpringConfiguration;
+import com.makotojava.learn.junit.Person;
+import com.makotojava.learn.junit.PersonDaoBean;
+import com.makotojava.learn.junit.PersonTestEnum;
+import com.makotojava.learn.junit.StatementCachingDataSource;
+import com.makotojava.learn.junit.TestSpringConfigurationPooled;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Test class for the pooled DataSource built by AbstractSpringConfiguration.
+ * 
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing pooled DataSource")
+@RunWith(JUnitPlatform.class)
+public class PooledDataSourceTest {
+
+  private AnnotationConfigApplicationContext ctx;
+
+  private HikariDataSource classUnderTest;
+
+  @BeforeEach
+  void setUp() {
+    System.setProperty(AbstractSpringConfiguration.POOL_MAX_SIZE, "2");
+    System.setProperty(AbstractSpringConfiguration.POOL_CONNECTION_TIMEOUT_MS, "250");
+    ctx = new AnnotationConfigApplicationContext(TestSpringConfigurationPooled.class);
+    classUnderTest = (HikariDataSource) ctx.getBean("dataSource");
+  }
+
+  @AfterEach
+  void tearDown() {
+    System.clearProperty(AbstractSpringConfiguration.POOL_MAX_SIZE);
+    System.clearProperty(AbstractSpringConfiguration.POOL_CONNECTION_TIMEOUT_MS);
+    EmbeddedDatabase embeddedDb = (EmbeddedDatabase) classUnderTest.getDataSource();
+    ctx.close();
+    embeddedDb.shutdown();
+  }
+
+  @Test
+  @DisplayName("Pool should be configured from the dataSource.pool properties")
+  public void configuration() {
+    assertAll(
+        () -> assertEquals(2, classUnderTest.getMaximumPoolSize()),
+        () -> assertEquals(AbstractSpringConfiguration.DEFAULT_POOL_MIN_IDLE, classUnderTest.getMinimumIdle()),
+        () -> assertEquals(250, classUnderTest.getConnectionTimeout()),
+        () -> assertEquals(AbstractSpringConfiguration.DEFAULT_POOL_LEAK_DETECTION_THRESHOLD_MS,
+            classUnderTest.getLeakDetectionThreshold()));
+  }
+
+  @Test
+  @DisplayName("PersonDaoBean should work over the pool")
+  public void personDaoBean() {
+    PersonDaoBean personDao = ctx.getBean(PersonDaoBean.class);
+    for (int aa = 0; aa < 10; aa++) {
+      assertEquals(PersonTestEnum.values().length, personDao.findAll().size());
+    }
+    assertEquals(0, classUnderTest.getHikariPoolMXBean().getActiveConnections());
+  }
+
+  @Test
+  @DisplayName("Statement cache should get hits across pool checkouts")
+  public void statementCachingDataSource() {
+    StatementCachingDataSource statementCache = new StatementCachingDataSource(classUnderTest);
+    PersonDaoBean personDao = new PersonDaoBean();
+    personDao.setDataSource(statementCache);
+    Person expected = PersonTestEnum.PERSON_1.getPerson();
+    for (int aa = 0; aa < 10; aa++) {
+      assertEquals(expected, personDao.findById(expected.getId()));
+    }
+    assertAll(
+        () -> assertTrue(statementCache.getMisses() <= classUnderTest.getMaximumPoolSize(),
+            "misses: " + statementCache.getMisses()),
+        () -> assertEquals(10, statementCache.getHits() + statementCache.getMisses()),
+        () -> assertEquals(0, classUnderTest.getHikariPoolMXBean().getActiveConnections()));
+  }
+
+  @Test
+  @DisplayName("Acquiring a connection should time out when the pool is exhausted")
+  public void getConnection_timesOut() throws Exception {
+    try (Connection first = classUnderTest.getConnection(); Connection second = classUnderTest.getConnection()) {
+      assertTrue(first.isValid(1));
+      assertThrows(SQLException.class, () -> classUnderTest.getConnection());
+    }
+  }
+
+}
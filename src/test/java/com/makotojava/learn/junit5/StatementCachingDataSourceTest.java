@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 Makoto Consulting Group, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.makotojava.learn.junit5;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.runner.JUnitPlatform;
+import org.junit.runner.RunWith;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import com.makotojava.learn.junit.Person;
+import com.makotojava.learn.junit.PersonDaoBean;
+import com.makotojava.learn.junit.PersonTestEnum;
+import com.makotojava.learn.junit.StatementCachingDataSource;
+
+/**
+ * Test class for StatementCachingDataSource.
+ * 
+ * @author J Steven Perry
+ *
+ */
+@DisplayName("Testing StatementCachingDataSource")
+@RunWith(JUnitPlatform.class)
+public class StatementCachingDataSourceTest extends AbstractBaseTest {
+
+  private static final String SQL = "SELECT * FROM " + Person.TABLE_NAME + " WHERE id = ?";
+
+  private EmbeddedDatabase embeddedDb;
+
+  private StatementCachingDataSource classUnderTest;
+
+  @BeforeEach
+  void setUp() {
+    embeddedDb = new EmbeddedDatabaseBuilder()
+        .generateUniqueName(true)
+        .setType(EmbeddedDatabaseType.DERBY)
+        .addScript("sql/create_tables.sql")
+        .addScript("sql/insert_data.sql")
+        .build();
+    classUnderTest = new StatementCachingDataSource(embeddedDb, 1);
+  }
+
+  @AfterEach
+  void tearDown() {
+    embeddedDb.shutdown();
+  }
+
+  @Test
+  @DisplayName("Closed statement should be handed out again for the same SQL")
+  public void prepareStatement_reusesClosedStatement() throws Exception {
+    try (Connection con = classUnderTest.getConnection()) {
+      PreparedStatement first = con.prepareStatement(SQL);
+      first.close();
+      PreparedStatement second = con.prepareStatement(SQL);
+      assertSame(first.unwrap(PreparedStatement.class), second.unwrap(PreparedStatement.class));
+      second.close();
+    }
+  }
+
+  @Test
+  @DisplayName("Statement still in use should not be handed out twice")
+  public void prepareStatement_doesNotShareOpenStatement() throws Exception {
+    try (Connection con = classUnderTest.getConnection();
+        PreparedStatement first = con.prepareStatement(SQL);
+        PreparedStatement second = con.prepareStatement(SQL)) {
+      assertNotSame(first.unwrap(PreparedStatement.class), second.unwrap(PreparedStatement.class));
+    }
+  }
+
+  @Test
+  @DisplayName("Evicted statement should be closed")
+  public void prepareStatement_closesEvictedStatement() throws Exception {
+    try (Connection con = classUnderTest.getConnection()) {
+      PreparedStatement first = con.prepareStatement(SQL);
+      PreparedStatement target = first.unwrap(PreparedStatement.class);
+      first.close();
+      con.prepareStatement("SELECT * FROM " + Person.TABLE_NAME).close();
+      assertTrue(target.isClosed());
+    }
+  }
+
+  @Test
+  @DisplayName("PersonDaoBean should work over a cached, reused Connection")
+  public void personDaoBean() throws Exception {
+    SingleConnectionDataSource singleConnectionDataSource = new SingleConnectionDataSource(
+        new StatementCachingDataSource(embeddedDb).getConnection(), true);
+    PersonDaoBean personDao = new PersonDaoBean();
+    personDao.setDataSource(singleConnectionDataSource);
+    for (int aa = 0; aa < 2; aa++) {
+      for (PersonTestEnum testPerson : PersonTestEnum.values()) {
+        Person expected = testPerson.getPerson();
+        Person person = personDao.findById(expected.getId());
+        assertNotNull(person);
+        performPersonAssertions(expected.getLastName(), expected.getFirstName(), expected.getAge(),
+            expected.getEyeColor(), expected.getGender(), person);
+      }
+    }
+    assertEquals(PersonTestEnum.values().length, personDao.findAll().size());
+    singleConnectionDataSource.destroy();
+  }
+
+}
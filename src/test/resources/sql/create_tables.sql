@@ -23,4 +23,11 @@ CREATE TABLE hju5_person(
   );
 
 ALTER TABLE hju5_person ADD CONSTRAINT uc_1 UNIQUE(last_name, first_name);
-  
\ No newline at end of file
+
+-- Supports keyset (seek) pagination by last name, see PersonDao.findAllByLastName(String, Long, int)
+CREATE INDEX ix_person_last_name_id ON hju5_person(last_name, id);
+
+-- Support PersonDao.findByCriteria(), so age, eye color and gender filters run in the DB
+CREATE INDEX ix_person_age ON hju5_person(age);
+CREATE INDEX ix_person_eye_color ON hju5_person(eye_color);
+CREATE INDEX ix_person_gender ON hju5_person(gender);